@@ -0,0 +1,56 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.benchmark;
+
+import com.github.jhalliday.wealsome.api.ExternVec;
+import com.github.jhalliday.wealsome.api.WasmAPI;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.ResourceScope;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Shared setup for the benchmarks: the native library and the wasm modules bundled as resources.
+ * The modules are compiled from the .wat files next to them, e.g. with 'wat2wasm calls.wat'.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    public static void loadNativeImpl() {
+        System.loadLibrary("wasmtime");
+    }
+
+    public static byte[] readWasm(String filename) {
+        try (InputStream inputStream = BenchmarkSupport.class.getResourceAsStream("/wasm/" + filename)) {
+            if (inputStream == null) {
+                throw new IllegalArgumentException("no such resource: " + filename);
+            }
+            return inputStream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the wasm_extern_t* at the given index of the vec.
+     */
+    public static MemoryAddress extern(ResourceScope resourceScope, ExternVec externVec, int index) {
+        return WasmAPI.ptr$get(externVec.data().asSegment(WasmAPI.pointerMemoryLayout.byteSize() * externVec.size(), resourceScope), index);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.benchmark;
+
+import com.github.jhalliday.wealsome.api.Module;
+import com.github.jhalliday.wealsome.api.*;
+import jdk.incubator.foreign.ResourceScope;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls to exported functions taking 0, 1, 4 or 16 i32 params,
+ * both with the ValVecs built once up front and with them built per call, as most callers do.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CallBenchmark {
+
+    // the export index in calls.wasm for each arity
+    private static final List<Integer> ARITIES = List.of(0, 1, 4, 16);
+
+    @Param({"0", "1", "4", "16"})
+    public int arity;
+
+    private ResourceScope resourceScope;
+    private Engine engine;
+    private Store store;
+    private Module module;
+    private Instance instance;
+    private ExternVec exports;
+    private WasmFunc func;
+    private List<UnVal> paramValues;
+    private List<UnVal> resultValues;
+    private ValVec params;
+    private ValVec results;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.loadNativeImpl();
+        resourceScope = ResourceScope.newConfinedScope();
+        engine = new Engine();
+        store = engine.newStore();
+        ByteVec binary = new ByteVec(resourceScope, BenchmarkSupport.readWasm("calls.wasm"));
+        module = new Module(store, binary);
+        binary.close();
+        instance = new Instance(store, module, new ExternVec(resourceScope));
+        exports = new ExternVec(resourceScope);
+        instance.exports(exports);
+        func = exports.asFunc(ARITIES.indexOf(arity));
+
+        paramValues = new ArrayList<>();
+        for (int i = 0; i < arity; i++) {
+            paramValues.add(new UnVal(ValType.I32, i));
+        }
+        resultValues = arity == 0 ? Collections.emptyList() : List.of(new UnVal(ValType.I32, 0));
+        params = new ValVec(resourceScope, paramValues);
+        results = new ValVec(resourceScope, resultValues);
+    }
+
+    @TearDown
+    public void tearDown() {
+        params.close();
+        results.close();
+        exports.close();
+        instance.close();
+        module.close();
+        store.close();
+        engine.close();
+        resourceScope.close();
+    }
+
+    @Benchmark
+    public void apply() {
+        func.apply(params, results);
+    }
+
+    @Benchmark
+    public void applyWithMarshalling(Blackhole blackhole) {
+        try (ResourceScope callScope = ResourceScope.newConfinedScope()) {
+            ValVec callParams = new ValVec(callScope, paramValues);
+            ValVec callResults = new ValVec(callScope, resultValues);
+            func.apply(callParams, callResults);
+            if (arity != 0) {
+                blackhole.consume(callResults.read(0).value);
+            }
+        }
+    }
+
+    @Benchmark
+    public void applyWithArena(Blackhole blackhole) {
+        try (CallArena callArena = CallArena.acquire()) {
+            ValVec callParams = new ValVec(callArena, paramValues);
+            ValVec callResults = new ValVec(callArena, resultValues);
+            func.apply(callParams, callResults);
+            if (arity != 0) {
+                blackhole.consume(callResults.read(0).value);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.benchmark;
+
+import com.github.jhalliday.wealsome.api.Module;
+import com.github.jhalliday.wealsome.api.*;
+import com.github.jhalliday.wealsome.generated.wasm_func_callback_t;
+import com.github.jhalliday.wealsome.generated.wasm_val_vec_t;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.ResourceScope;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A wasm -> host -> wasm round trip, with the host function either written in the same way as the Callback example,
+ * or bound from a lambda by Store.newIntUnaryFunc.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CallbackBenchmark {
+
+    private static class EchoCallback implements wasm_func_callback_t {
+        @Override
+        public MemoryAddress apply(MemoryAddress params, MemoryAddress results) {
+            try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+                WasmAPI.val_copy(
+                        wasm_val_vec_t.data$get(results.asSegment(wasm_val_vec_t.sizeof(), resourceScope)),
+                        wasm_val_vec_t.data$get(params.asSegment(wasm_val_vec_t.sizeof(), resourceScope)));
+            }
+            return MemoryAddress.NULL;
+        }
+    }
+
+    @Param({"raw", "lambda"})
+    private String binding;
+
+    private ResourceScope resourceScope;
+    private Engine engine;
+    private Store store;
+    private Module module;
+    private Func hostFunc;
+    private Instance instance;
+    private ExternVec exports;
+    private WasmFunc run;
+    private ValVec params;
+    private ValVec results;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.loadNativeImpl();
+        resourceScope = ResourceScope.newConfinedScope();
+        engine = new Engine();
+        store = engine.newStore();
+        ByteVec binary = new ByteVec(resourceScope, BenchmarkSupport.readWasm("callback.wasm"));
+        module = new Module(store, binary);
+        binary.close();
+
+        if ("lambda".equals(binding)) {
+            hostFunc = store.newIntUnaryFunc(operand -> operand);
+        } else {
+            FuncType hostType = FuncType.new_1_1(resourceScope, ValType.I32, ValType.I32);
+            hostFunc = new Func(store, hostType, new EchoCallback());
+            hostType.close();
+        }
+
+        instance = new Instance(store, module, new ExternVec(resourceScope, List.of(hostFunc)));
+        exports = new ExternVec(resourceScope);
+        instance.exports(exports);
+        run = exports.asFunc(0);
+
+        params = new ValVec(resourceScope, List.of(new UnVal(ValType.I32, 42)));
+        results = new ValVec(resourceScope, List.of(new UnVal(ValType.I32, 0)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        params.close();
+        results.close();
+        exports.close();
+        instance.close();
+        hostFunc.close();
+        module.close();
+        store.close();
+        engine.close();
+        resourceScope.close();
+    }
+
+    @Benchmark
+    public void roundTrip() {
+        run.apply(params, results);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.benchmark;
+
+import com.github.jhalliday.wealsome.api.Engine;
+import com.github.jhalliday.wealsome.api.ExternVec;
+import com.github.jhalliday.wealsome.api.WasmExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link WasmExecutor} as the number of workers grows, for each way of handing calls to them.
+ * Each operation submits a batch of calls and waits for them all,
+ * so on an otherwise idle machine the score should scale with the workers up to the number of cores.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    @Param({"BLOCKING", "SPIN_THEN_PARK"})
+    private WasmExecutor.HandoffMode handoffMode;
+
+    private Engine engine;
+    private WasmExecutor executor;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.loadNativeImpl();
+        engine = new Engine();
+        executor = new WasmExecutor(engine, BenchmarkSupport.readWasm("calls.wasm"), threads,
+                (store, resourceScope) -> new ExternVec(resourceScope), handoffMode);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.close();
+        engine.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void submit() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            futures[i] = executor.submit("add4", i, 1, 2, 3);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.benchmark;
+
+import com.github.jhalliday.wealsome.api.Module;
+import com.github.jhalliday.wealsome.api.*;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.ResourceScope;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the hot path bindings selected by the wealsome.hotcalls property.
+ * The property is read once per JVM, so each choice is a subclass with its own fork arguments.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public abstract class HotCallsBenchmark {
+
+    @Fork(value = 1, jvmArgsAppend = "-Dwealsome.hotcalls=direct")
+    public static class Direct extends HotCallsBenchmark {
+    }
+
+    @Fork(value = 1, jvmArgsAppend = "-Dwealsome.hotcalls=traced")
+    public static class Traced extends HotCallsBenchmark {
+    }
+
+    @Fork(value = 1, jvmArgsAppend = "-Dwealsome.hotcalls=generated")
+    public static class Generated extends HotCallsBenchmark {
+    }
+
+    private ResourceScope resourceScope;
+    private Engine engine;
+    private Store store;
+    private Module callsModule;
+    private Module memoryModule;
+    private Instance callsInstance;
+    private Instance memoryInstance;
+    private ExternVec callsExports;
+    private ExternVec memoryExports;
+    private WasmFunc nop;
+    private MemoryAddress memory;
+    private ValVec params;
+    private ValVec results;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.loadNativeImpl();
+        resourceScope = ResourceScope.newConfinedScope();
+        engine = new Engine();
+        store = engine.newStore();
+
+        ByteVec binary = new ByteVec(resourceScope, BenchmarkSupport.readWasm("calls.wasm"));
+        callsModule = new Module(store, binary);
+        binary.close();
+        callsInstance = new Instance(store, callsModule, new ExternVec(resourceScope));
+        callsExports = new ExternVec(resourceScope);
+        callsInstance.exports(callsExports);
+        nop = callsExports.asFunc(0);
+
+        binary = new ByteVec(resourceScope, BenchmarkSupport.readWasm("memory.wasm"));
+        memoryModule = new Module(store, binary);
+        binary.close();
+        memoryInstance = new Instance(store, memoryModule, new ExternVec(resourceScope));
+        memoryExports = new ExternVec(resourceScope);
+        memoryInstance.exports(memoryExports);
+        memory = WasmAPI.extern_as_memory(BenchmarkSupport.extern(resourceScope, memoryExports, 0));
+
+        params = new ValVec(resourceScope);
+        results = new ValVec(resourceScope);
+    }
+
+    @TearDown
+    public void tearDown() {
+        callsExports.close();
+        memoryExports.close();
+        callsInstance.close();
+        memoryInstance.close();
+        callsModule.close();
+        memoryModule.close();
+        store.close();
+        engine.close();
+        resourceScope.close();
+    }
+
+    @Benchmark
+    public MemoryAddress funcCall() {
+        return WasmAPI.func_call(nop, params, results);
+    }
+
+    @Benchmark
+    public long memoryDataSize() {
+        return WasmAPI.memory_data_size(memory);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.benchmark;
+
+import com.github.jhalliday.wealsome.api.Module;
+import com.github.jhalliday.wealsome.api.*;
+import jdk.incubator.foreign.ResourceScope;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation costs for the main objects: Engine, Store, Module (compiled or deserialized) and Instance.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LifecycleBenchmark {
+
+    private ResourceScope resourceScope;
+    private Engine engine;
+    private Store store;
+    private ByteVec binary;
+    private ByteVec serialized;
+    private Module module;
+    private SharedModule sharedModule;
+    private ExternVec imports;
+
+    /**
+     * A fresh Store, with the module obtained into it, for each invocation.
+     * A Store keeps the state of every instance created in it alive until it is closed,
+     * so sharing one across invocations would measure the growth of the Store rather than instantiation.
+     * The setup and teardown are not measured, though at this granularity their timestamps add some noise.
+     */
+    @State(Scope.Thread)
+    public static class FreshStore {
+
+        private Store store;
+        private Module module;
+
+        @Setup(Level.Invocation)
+        public void setup(LifecycleBenchmark benchmark) {
+            store = benchmark.engine.newStore();
+            module = store.obtainModule(benchmark.sharedModule);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            module.close();
+            store.close();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.loadNativeImpl();
+        resourceScope = ResourceScope.newConfinedScope();
+        engine = new Engine();
+        store = engine.newStore();
+        binary = new ByteVec(resourceScope, BenchmarkSupport.readWasm("calls.wasm"));
+        module = new Module(store, binary);
+        serialized = module.serialize(resourceScope);
+        sharedModule = new SharedModule(module);
+        imports = new ExternVec(resourceScope);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serialized.close();
+        sharedModule.close();
+        module.close();
+        binary.close();
+        store.close();
+        engine.close();
+        resourceScope.close();
+    }
+
+    @Benchmark
+    public void engine() {
+        new Engine().close();
+    }
+
+    @Benchmark
+    public void store() {
+        engine.newStore().close();
+    }
+
+    @Benchmark
+    public void compileModule() {
+        new Module(store, binary).close();
+    }
+
+    @Benchmark
+    public void deserializeModule() {
+        store.deserializeModule(serialized).close();
+    }
+
+    @Benchmark
+    public void instance(FreshStore freshStore) {
+        new Instance(freshStore.store, freshStore.module, imports).close();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.benchmark;
+
+import com.github.jhalliday.wealsome.api.*;
+import jdk.incubator.foreign.ResourceScope;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marshalling values into and out of a ValVec, without a call:
+ * the per-value path of ValVec(ResourceScope, List&lt;UnVal&gt;) and ValVec.read, which looks up the accessor
+ * for each value from its type, against a {@link ValMarshaller} resolved once for the signature and a reused vec.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarshallingBenchmark {
+
+    @Param({"I32", "I64", "F64"})
+    public ValType valType;
+
+    @Param({"1", "4", "16"})
+    public int arity;
+
+    private ResourceScope resourceScope;
+    private List<UnVal> unVals;
+    private Number[] values;
+    private Number[] readValues;
+    private ValMarshaller valMarshaller;
+    private ValVec valVec;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.loadNativeImpl();
+        resourceScope = ResourceScope.newConfinedScope();
+        unVals = new ArrayList<>();
+        values = new Number[arity];
+        for (int i = 0; i < arity; i++) {
+            unVals.add(new UnVal(valType, i));
+            values[i] = i;
+        }
+        readValues = new Number[arity];
+        valMarshaller = ValMarshaller.of(Collections.nCopies(arity, valType));
+        valVec = valMarshaller.newValVec(resourceScope);
+    }
+
+    @TearDown
+    public void tearDown() {
+        valVec.close();
+        resourceScope.close();
+    }
+
+    @Benchmark
+    public void perValue(Blackhole blackhole) {
+        try (ResourceScope callScope = ResourceScope.newConfinedScope()) {
+            ValVec vec = new ValVec(callScope, unVals);
+            for (int i = 0; i < arity; i++) {
+                blackhole.consume(vec.read(i).value);
+            }
+        }
+    }
+
+    @Benchmark
+    public Number[] marshaller() {
+        valMarshaller.write(valVec, values);
+        valMarshaller.read(valVec, readValues);
+        return readValues;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.benchmark;
+
+import com.github.jhalliday.wealsome.api.Module;
+import com.github.jhalliday.wealsome.api.*;
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads from the linear memory exported by a module.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemoryBenchmark {
+
+    @Param({"64", "4096", "65536"})
+    public int bytes;
+
+    private ResourceScope resourceScope;
+    private Engine engine;
+    private Store store;
+    private Module module;
+    private Instance instance;
+    private ExternVec exports;
+    private MemoryAddress memoryAddress;
+    private Memory memory;
+    private byte[] buffer;
+    private MemorySegment bufferSegment;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.loadNativeImpl();
+        resourceScope = ResourceScope.newConfinedScope();
+        engine = new Engine();
+        store = engine.newStore();
+        ByteVec binary = new ByteVec(resourceScope, BenchmarkSupport.readWasm("memory.wasm"));
+        module = new Module(store, binary);
+        binary.close();
+        instance = new Instance(store, module, new ExternVec(resourceScope));
+        exports = new ExternVec(resourceScope);
+        instance.exports(exports);
+        memoryAddress = WasmAPI.extern_as_memory(BenchmarkSupport.extern(resourceScope, exports, 0));
+        memory = exports.asMemory(0);
+
+        buffer = new byte[bytes];
+        bufferSegment = MemorySegment.ofArray(buffer);
+    }
+
+    @TearDown
+    public void tearDown() {
+        exports.close();
+        instance.close();
+        module.close();
+        store.close();
+        engine.close();
+        resourceScope.close();
+    }
+
+    /**
+     * Locating the memory from scratch, which has to be done whenever the guest may have grown it.
+     */
+    private MemorySegment rawSegment() {
+        return WasmAPI.memory_data(memoryAddress).asSegment(WasmAPI.memory_data_size(memoryAddress), resourceScope);
+    }
+
+    @Benchmark
+    public int readIntRaw() {
+        return MemoryAccess.getIntAtOffset(rawSegment(), bytes - 4);
+    }
+
+    @Benchmark
+    public byte[] readBulkRaw() {
+        bufferSegment.copyFrom(rawSegment().asSlice(0, bytes));
+        return buffer;
+    }
+
+    @Benchmark
+    public int readInt() {
+        return MemoryAccess.getIntAtOffset(memory.segment(), bytes - 4);
+    }
+
+    @Benchmark
+    public byte[] readBulk() {
+        memory.copyTo(0, buffer);
+        return buffer;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.benchmark;
+
+import com.github.jhalliday.wealsome.api.Module;
+import com.github.jhalliday.wealsome.api.*;
+import jdk.incubator.foreign.ResourceScope;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The typed call path, for comparison with {@link CallBenchmark} at arity 1.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypedCallBenchmark {
+
+    private ResourceScope resourceScope;
+    private Engine engine;
+    private Store store;
+    private Module module;
+    private Instance instance;
+    private ExternVec exports;
+    private IntUnaryOperator id;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.loadNativeImpl();
+        resourceScope = ResourceScope.newConfinedScope();
+        engine = new Engine();
+        store = engine.newStore();
+        ByteVec binary = new ByteVec(resourceScope, BenchmarkSupport.readWasm("calls.wasm"));
+        module = new Module(store, binary);
+        binary.close();
+        instance = new Instance(store, module, new ExternVec(resourceScope));
+        exports = new ExternVec(resourceScope);
+        instance.exports(exports);
+        id = exports.asFunc(1).asIntUnaryOperator();
+    }
+
+    @TearDown
+    public void tearDown() {
+        exports.close();
+        instance.close();
+        module.close();
+        store.close();
+        engine.close();
+        resourceScope.close();
+    }
+
+    @Benchmark
+    public int intUnaryOperator() {
+        return id.applyAsInt(counter++);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.benchmark;
+
+import com.github.jhalliday.wealsome.api.Module;
+import com.github.jhalliday.wealsome.api.*;
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Passing a double[] through a guest kernel and back: bulk copies via {@link PrimitiveArrayChannel},
+ * against writing and reading guest memory an element at a time.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorBenchmark {
+
+    @Param({"64", "4096", "65536"})
+    public int length;
+
+    private ResourceScope resourceScope;
+    private Engine engine;
+    private Store store;
+    private Module module;
+    private Instance instance;
+    private PrimitiveArrayChannel channel;
+    private IntBinaryOperator scale;
+    private Memory memory;
+    private double[] data;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.loadNativeImpl();
+        resourceScope = ResourceScope.newConfinedScope();
+        engine = new Engine();
+        store = engine.newStore();
+        ByteVec binary = new ByteVec(resourceScope, BenchmarkSupport.readWasm("vectors.wasm"));
+        module = new Module(store, binary);
+        binary.close();
+        instance = new Instance(store, module, new ExternVec(resourceScope));
+        channel = new PrimitiveArrayChannel(instance, "memory", "alloc", length * Double.BYTES);
+        scale = channel.kernel("scale");
+        memory = instance.memory("memory");
+        data = new double[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        instance.close();
+        module.close();
+        store.close();
+        engine.close();
+        resourceScope.close();
+    }
+
+    @Benchmark
+    public double[] bulk() {
+        int pointer = channel.put(0, data);
+        scale.applyAsInt(pointer, length);
+        channel.get(0, data);
+        return data;
+    }
+
+    @Benchmark
+    public double[] perElement() {
+        int pointer = channel.getBase();
+        MemorySegment segment = memory.segment();
+        for (int i = 0; i < length; i++) {
+            MemoryAccess.setDoubleAtOffset(segment, pointer + (long) i * Double.BYTES, data[i]);
+        }
+        scale.applyAsInt(pointer, length);
+        segment = memory.segment();
+        for (int i = 0; i < length; i++) {
+            data[i] = MemoryAccess.getDoubleAtOffset(segment, pointer + (long) i * Double.BYTES);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,15 @@
+(module
+  (func (export "nop"))
+  (func (export "id") (param i32) (result i32)
+    (local.get 0))
+  (func (export "add4") (param i32 i32 i32 i32) (result i32)
+    (i32.add (i32.add (i32.add (local.get 0) (local.get 1)) (local.get 2)) (local.get 3)))
+  (func (export "add16")
+    (param i32 i32 i32 i32 i32 i32 i32 i32 i32 i32 i32 i32 i32 i32 i32 i32) (result i32)
+    (local.get 0)
+    (i32.add (local.get 1)) (i32.add (local.get 2)) (i32.add (local.get 3))
+    (i32.add (local.get 4)) (i32.add (local.get 5)) (i32.add (local.get 6))
+    (i32.add (local.get 7)) (i32.add (local.get 8)) (i32.add (local.get 9))
+    (i32.add (local.get 10)) (i32.add (local.get 11)) (i32.add (local.get 12))
+    (i32.add (local.get 13)) (i32.add (local.get 14)) (i32.add (local.get 15)))
+)
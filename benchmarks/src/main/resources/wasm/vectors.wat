@@ -0,0 +1,19 @@
+(module
+  (memory (export "memory") 16)
+  (global $heap (mut i32) (i32.const 1024))
+  ;; a bump allocator: never frees.
+  (func (export "alloc") (param $size i32) (result i32)
+    (global.get $heap)
+    (global.set $heap (i32.add (global.get $heap) (local.get $size))))
+  ;; doubles each of the len f64 at ptr, in place.
+  (func (export "scale") (param $ptr i32) (param $len i32) (result i32)
+    (local $end i32)
+    (local.set $end (i32.add (local.get $ptr) (i32.shl (local.get $len) (i32.const 3))))
+    (block
+      (loop
+        (br_if 1 (i32.ge_u (local.get $ptr) (local.get $end)))
+        (f64.store (local.get $ptr) (f64.mul (f64.load (local.get $ptr)) (f64.const 2)))
+        (local.set $ptr (i32.add (local.get $ptr) (i32.const 8)))
+        (br 0)))
+    (local.get $len))
+)
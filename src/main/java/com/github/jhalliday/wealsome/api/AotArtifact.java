@@ -0,0 +1,186 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A compiled module serialized ahead of time, e.g. at build time, so that startup only deserializes it.
+ * <p>
+ * The file is a header followed by the output of {@link Module#serialize(ResourceScope)}. The header records
+ * the engine version and a hash of the engine config fingerprint, so an artifact built for a different engine
+ * is rejected with a clear message, before wasmtime's own, less informative, check.
+ * <pre>
+ *     8 bytes   magic, "WEALSOME"
+ *     4 bytes   format version
+ *     2 bytes   length of the engine version, then that many bytes of UTF-8
+ *     32 bytes  sha-256 of the engine config fingerprint
+ *     2 bytes   length of the source hash, then that many bytes of UTF-8, see {@link Module#hash(ByteBuffer)}
+ *     8 bytes   length of the serialized module, then the serialized module
+ * </pre>
+ * All numbers are big-endian.
+ * <p>
+ * As with any serialized module, loading trusts the artifact, so it must come from a trusted source.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class AotArtifact {
+
+    private static final Logger logger = Logger.getLogger(AotArtifact.class);
+
+    /**
+     * Distinct from the {@link ModuleCache} suffix, since the formats differ: an artifact has a header.
+     */
+    public static final String SUFFIX = ".wsaot";
+
+    /**
+     * The version of the native engine as asserted by the user, since the C API has no way to ask the library for it.
+     * It is taken from the wealsome.wasmtime.version system property, defaulting to the tested version, so the check
+     * on load only catches artifacts from a deployment that declares a different version. An artifact from an
+     * incompatible library that passes the check is still rejected by wasmtime when it is deserialized.
+     */
+    public static final String ENGINE_VERSION = System.getProperty("wealsome.wasmtime.version", "0.30.0");
+
+    private static final byte[] MAGIC = "WEALSOME".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 2;
+    private static final int HASH_SIZE = 32;
+
+    private AotArtifact() {
+    }
+
+    /**
+     * Serializes the module, which must have been compiled with the given engine, to the file.
+     * The file is written via a temporary file and renamed into place.
+     *
+     * @param sourceHash the {@link Module#hash(ByteBuffer)} of the wasm binary the module was compiled from,
+     *                   so that a loaded module is identified in events as if it had been compiled.
+     */
+    public static void write(Engine engine, Module module, String sourceHash, Path path) throws IOException {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}, {1}, {2}", engine, module, path);
+        }
+
+        byte[] version = ENGINE_VERSION.getBytes(StandardCharsets.UTF_8);
+        byte[] source = sourceHash.getBytes(StandardCharsets.UTF_8);
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ByteVec serialized = module.serialize(resourceScope);
+            ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 4 + 2 + version.length + HASH_SIZE + 2 + source.length + 8);
+            header.put(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putShort((short) version.length)
+                    .put(version)
+                    .put(configHash(engine))
+                    .putShort((short) source.length)
+                    .put(source)
+                    .putLong(serialized.size())
+                    .flip();
+
+            Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel fileChannel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    ByteBuffer body = serialized.asSegment().asByteBuffer();
+                    while (header.hasRemaining() || body.hasRemaining()) {
+                        fileChannel.write(new ByteBuffer[]{header, body});
+                    }
+                }
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                serialized.close();
+                Files.deleteIfExists(tmp);
+            }
+        }
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit");
+        }
+    }
+
+    /**
+     * Deserializes the module in the file into the store, without compiling.
+     * The file is memory-mapped and the module read from the mapping in place.
+     *
+     * @throws IllegalArgumentException if the file is not an artifact, or was built for a different engine version or config.
+     */
+    public static Module load(Store store, Path path) throws IOException {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}, {1}", store, path);
+        }
+
+        Module module;
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            MemorySegment mapped = ByteVec.mapFile(resourceScope, path).asSegment();
+            ByteBuffer header = mapped.asByteBuffer().order(ByteOrder.BIG_ENDIAN);
+
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException(path + " is not a compiled module artifact");
+            }
+            int formatVersion = header.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IllegalArgumentException(path + " has format version " + formatVersion + ", expected " + FORMAT_VERSION);
+            }
+            byte[] version = new byte[header.getShort()];
+            header.get(version);
+            String engineVersion = new String(version, StandardCharsets.UTF_8);
+            if (!ENGINE_VERSION.equals(engineVersion)) {
+                throw new IllegalArgumentException(path + " was compiled for engine version " + engineVersion + ", not " + ENGINE_VERSION);
+            }
+            byte[] hash = new byte[HASH_SIZE];
+            header.get(hash);
+            if (!Arrays.equals(hash, configHash(store.getEngine()))) {
+                throw new IllegalArgumentException(path + " was compiled with a different engine config than " + store.getEngine().getConfig());
+            }
+            byte[] source = new byte[header.getShort()];
+            header.get(source);
+            String sourceHash = new String(source, StandardCharsets.UTF_8);
+            long length = header.getLong();
+
+            ByteVec serialized = ByteVec.borrow(resourceScope, mapped.asSlice(header.position(), length));
+            module = Module.deserialize(store, serialized, () -> sourceHash);
+        }
+        if (MemoryAddress.NULL.equals(module.address())) {
+            throw new IllegalArgumentException(path + " could not be deserialized");
+        }
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", module);
+        }
+        return module;
+    }
+
+    private static byte[] configHash(Engine engine) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return messageDigest.digest(engine.getConfigFingerprint().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemoryAddress;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of a batched call: which calls in the batch trapped, and why.
+ * Results for calls that trapped are left untouched in the output array.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class BatchResult {
+
+    private static final int[] NO_POSITIONS = new int[0];
+    private static final String[] NO_MESSAGES = new String[0];
+
+    private int[] trapPositions = NO_POSITIONS;
+    private String[] trapMessages = NO_MESSAGES;
+    private int trapCount;
+
+    BatchResult() {
+    }
+
+    /**
+     * Records a trap and then deletes it.
+     *
+     * @param trapAddress an owned wasm_trap_t*
+     */
+    void addTrap(int position, MemoryAddress trapAddress) {
+        if (trapCount == trapPositions.length) {
+            int capacity = Math.max(4, trapCount * 2);
+            trapPositions = Arrays.copyOf(trapPositions, capacity);
+            trapMessages = Arrays.copyOf(trapMessages, capacity);
+        }
+        try {
+            String message = TrapResult.decodeMessage(trapAddress);
+            TrapResult.observe(trapAddress, message);
+            trapPositions[trapCount] = position;
+            trapMessages[trapCount] = message;
+            trapCount++;
+        } finally {
+            WasmAPI.trap_delete(trapAddress);
+        }
+    }
+
+    public boolean hasTraps() {
+        return trapCount != 0;
+    }
+
+    public int getTrapCount() {
+        return trapCount;
+    }
+
+    /**
+     * @return the indexes in the batch of the calls that trapped, in ascending order.
+     */
+    public int[] getTrapPositions() {
+        return Arrays.copyOf(trapPositions, trapCount);
+    }
+
+    /**
+     * @param n which trap, from 0 to getTrapCount()-1
+     */
+    public String getTrapMessage(int n) {
+        if (n >= trapCount) {
+            throw new IndexOutOfBoundsException(n);
+        }
+        return trapMessages[n];
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "trapPositions=" + Arrays.toString(getTrapPositions()) +
+                '}';
+    }
+}
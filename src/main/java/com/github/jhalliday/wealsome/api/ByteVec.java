@@ -19,6 +19,11 @@ import jdk.incubator.foreign.MemorySegment;
 import jdk.incubator.foreign.ResourceScope;
 import org.jboss.logging.Logger;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 /**
  * An array of bytes. (wasm_byte_vec_t*)
  *
@@ -30,15 +35,22 @@ public class ByteVec implements Addressable, AutoCloseable {
 
     private final ResourceScope resourceScope;
     private final MemorySegment byte_vec_t;
+    private final boolean shouldDelete;
 
     public ByteVec(ResourceScope resourceScope, MemoryAddress memoryAddress) {
         this.resourceScope = resourceScope;
         byte_vec_t = wasm_byte_vec_t.ofAddress(memoryAddress, resourceScope);
+        shouldDelete = true;
     }
 
     public ByteVec(ResourceScope resourceScope, MemorySegment memorySegment) {
+        this(resourceScope, memorySegment, true);
+    }
+
+    private ByteVec(ResourceScope resourceScope, MemorySegment memorySegment, boolean shouldDelete) {
         this.resourceScope = resourceScope;
         byte_vec_t = memorySegment;
+        this.shouldDelete = shouldDelete;
     }
 
     public ByteVec(ResourceScope resourceScope, byte[] data) {
@@ -48,6 +60,7 @@ public class ByteVec implements Addressable, AutoCloseable {
 
         this.resourceScope = resourceScope;
         byte_vec_t = wasm_byte_vec_t.allocate(resourceScope);
+        shouldDelete = true;
 
         WasmAPI.byte_vec_new_uninitialized(byte_vec_t, data.length);
         MemoryAddress dataMemoryAddress = wasm_byte_vec_t.data$get(byte_vec_t);
@@ -58,10 +71,49 @@ public class ByteVec implements Addressable, AutoCloseable {
         }
     }
 
+    /**
+     * Creates the vec, and a copy of the data, in the arena, valid until the arena is closed.
+     */
+    public ByteVec(CallArena callArena, byte[] data) {
+        this(callArena.scope(), wasm_byte_vec_t.allocate(callArena), false);
+        MemorySegment dataSegment = callArena.allocate(data.length);
+        dataSegment.copyFrom(MemorySegment.ofArray(data));
+        wasm_byte_vec_t.size$set(byte_vec_t, data.length);
+        wasm_byte_vec_t.data$set(byte_vec_t, dataSegment.address());
+    }
+
+    /**
+     * Creates a vec over existing memory without copying it.
+     * The data is borrowed, not owned: it must outlive the vec and is not released by close().
+     */
+    static ByteVec borrow(ResourceScope resourceScope, MemorySegment data) {
+        MemorySegment byte_vec_t = wasm_byte_vec_t.allocate(resourceScope);
+        wasm_byte_vec_t.size$set(byte_vec_t, data.byteSize());
+        wasm_byte_vec_t.data$set(byte_vec_t, data.address());
+        return new ByteVec(resourceScope, byte_vec_t, false);
+    }
+
+    /**
+     * Memory-maps the file read-only and creates a vec over it, without copying.
+     * The mapping is borrowed: it lasts until the scope is closed and is not released by close().
+     */
+    public static ByteVec mapFile(ResourceScope resourceScope, Path path) throws IOException {
+        MemorySegment mapped = MemorySegment.mapFile(path, 0, Files.size(path), FileChannel.MapMode.READ_ONLY, resourceScope);
+        return borrow(resourceScope, mapped);
+    }
+
     public long size() {
         return wasm_byte_vec_t.size$get(byte_vec_t);
     }
 
+    /**
+     * @return the content of the vec, without copying.
+     */
+    public MemorySegment asSegment() {
+        MemoryAddress dataMemoryAddress = wasm_byte_vec_t.data$get(byte_vec_t);
+        return dataMemoryAddress.asSegment(wasm_byte_vec_t.size$get(byte_vec_t), resourceScope);
+    }
+
     public String asString() {
         MemoryAddress dataMemoryAddress = wasm_byte_vec_t.data$get(byte_vec_t);
         byte[] data = dataMemoryAddress.asSegment(wasm_byte_vec_t.size$get(byte_vec_t), resourceScope).toByteArray();
@@ -75,7 +127,9 @@ public class ByteVec implements Addressable, AutoCloseable {
 
     @Override
     public void close() {
-        WasmAPI.byte_vec_delete(byte_vec_t);
+        if (shouldDelete) {
+            WasmAPI.byte_vec_delete(byte_vec_t);
+        }
     }
 
     @Override
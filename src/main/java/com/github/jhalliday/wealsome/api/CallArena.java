@@ -0,0 +1,148 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import jdk.incubator.foreign.SegmentAllocator;
+import org.jboss.logging.Logger;
+
+import java.util.Arrays;
+
+/**
+ * A per-thread bump allocator over a slab of native memory, for the short-lived structures of a call
+ * (wasm_val_vec_t, wasm_val_t arrays, extern pointer arrays, byte vecs).
+ * <p>
+ * Usage is scoped: {@link #acquire()} marks the current position and {@link #close()} rewinds to it,
+ * so in steady state a call allocates nothing natively, and releasing its structures is a single store.
+ * Acquisitions nest, provided they are closed in reverse order.
+ * Anything too big for the remaining slab is allocated separately and freed when the outermost acquisition closes,
+ * at which point the slab is grown so the next call of that size fits.
+ * <p>
+ * Segments allocated from the arena are only valid until the acquisition they were allocated under is closed.
+ * Structures built on them do not own their native memory, so their close() does not free it.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public final class CallArena implements SegmentAllocator, AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(CallArena.class);
+
+    static final long DEFAULT_SLAB_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<CallArena> current = ThreadLocal.withInitial(() -> new CallArena(DEFAULT_SLAB_SIZE));
+
+    // the slab lives as long as the thread holds the arena, or until it is outgrown,
+    // so let the GC release the native memory.
+    private ResourceScope resourceScope;
+    private MemorySegment slab;
+    private long base;
+    private long offset;
+
+    private long[] marks = new long[4];
+    private int depth;
+
+    private ResourceScope overflowScope;
+    private long highWater;
+
+    private CallArena(long slabSize) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}", slabSize);
+        }
+
+        newSlab(slabSize);
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", this);
+        }
+    }
+
+    private void newSlab(long slabSize) {
+        resourceScope = ResourceScope.newImplicitScope();
+        slab = MemorySegment.allocateNative(slabSize, 16, resourceScope);
+        base = slab.address().toRawLongValue();
+    }
+
+    /**
+     * @return the calling thread's arena, marked so that closing it releases everything allocated from now on.
+     */
+    public static CallArena acquire() {
+        CallArena callArena = current.get();
+        callArena.mark();
+        return callArena;
+    }
+
+    private void mark() {
+        if (depth == marks.length) {
+            marks = Arrays.copyOf(marks, depth * 2);
+        }
+        marks[depth++] = offset;
+    }
+
+    /**
+     * @return the scope that segments allocated from the arena are associated with.
+     */
+    public ResourceScope scope() {
+        return resourceScope;
+    }
+
+    @Override
+    public MemorySegment allocate(long bytesSize, long bytesAlignment) {
+        if (depth == 0) {
+            throw new IllegalStateException("arena is not acquired");
+        }
+
+        long start = ((base + offset + bytesAlignment - 1) & -bytesAlignment) - base;
+        long end = start + bytesSize;
+        if (end <= slab.byteSize()) {
+            offset = end;
+            return slab.asSlice(start, bytesSize);
+        }
+
+        highWater = Math.max(highWater, end);
+        if (overflowScope == null) {
+            overflowScope = ResourceScope.newConfinedScope();
+        }
+        return MemorySegment.allocateNative(bytesSize, bytesAlignment, overflowScope);
+    }
+
+    /**
+     * Releases everything allocated since the matching {@link #acquire()}.
+     */
+    @Override
+    public void close() {
+        if (depth == 0) {
+            throw new IllegalStateException("arena is not acquired");
+        }
+        offset = marks[--depth];
+
+        if (depth == 0 && overflowScope != null) {
+            overflowScope.close();
+            overflowScope = null;
+            if (logger.isDebugEnabled()) {
+                logger.debugv("growing slab from {0} to fit {1}", slab.byteSize(), highWater);
+            }
+            newSlab(Long.highestOneBit(highWater) << 1);
+            highWater = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CallArena{" +
+                "slab=" + slab.byteSize() +
+                ", offset=" + offset +
+                ", depth=" + depth +
+                '}';
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import com.github.jhalliday.wealsome.generated.Wasm;
+import com.github.jhalliday.wealsome.generated.wasm_val_t;
+import com.github.jhalliday.wealsome.generated.wasm_val_vec_t;
+import jdk.incubator.foreign.*;
+import org.jboss.logging.Logger;
+
+/**
+ * A preallocated per-thread block of params and results (wasm_val_vec_t + wasm_val_t[])
+ * used by the typed call paths, so that a steady-state call does no marshalling allocation.
+ * <p>
+ * Instances are confined to the thread that obtained them via {@link #current()}.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+final class CallSlots {
+
+    private static final Logger logger = Logger.getLogger(CallSlots.class);
+
+    static final int DEFAULT_CAPACITY = 16;
+
+    static final byte I32 = (byte) Wasm.WASM_I32();
+    static final byte I64 = (byte) Wasm.WASM_I64();
+    static final byte F32 = (byte) Wasm.WASM_F32();
+    static final byte F64 = (byte) Wasm.WASM_F64();
+
+    static final long VAL_SIZE = wasm_val_t.sizeof();
+    static final long OF_OFFSET = wasm_val_t.$LAYOUT().byteOffset(MemoryLayout.PathElement.groupElement("of"));
+
+    private static final ThreadLocal<CallSlots> current = ThreadLocal.withInitial(() -> new CallSlots(DEFAULT_CAPACITY));
+
+    final int capacity;
+
+    private final MemorySegment params;
+    private final MemorySegment results;
+    private final MemorySegment paramVals;
+    private final MemorySegment resultVals;
+    private final MemorySegment globalVal;
+    private final MemoryAddress paramsAddress;
+    private final MemoryAddress resultsAddress;
+
+    private CallSlots(int capacity) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}", capacity);
+        }
+
+        this.capacity = capacity;
+
+        // the slots live as long as the thread holds them, so let the GC release the native memory.
+        ResourceScope resourceScope = ResourceScope.newImplicitScope();
+        params = wasm_val_vec_t.allocate(resourceScope);
+        results = wasm_val_vec_t.allocate(resourceScope);
+        paramVals = wasm_val_t.allocateArray(capacity, resourceScope);
+        resultVals = wasm_val_t.allocateArray(capacity, resourceScope);
+        globalVal = wasm_val_t.allocate(resourceScope);
+        wasm_val_vec_t.data$set(params, paramVals.address());
+        wasm_val_vec_t.data$set(results, resultVals.address());
+        paramsAddress = params.address();
+        resultsAddress = results.address();
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", this);
+        }
+    }
+
+    /**
+     * @return the slots for the calling thread, with at least {@link #DEFAULT_CAPACITY} entries.
+     */
+    static CallSlots current() {
+        return current.get();
+    }
+
+    /**
+     * @param arity the number of params or results the caller needs.
+     * @return the slots for the calling thread, reallocated if the existing ones are too small.
+     */
+    static CallSlots current(long arity) {
+        CallSlots callSlots = current.get();
+        if (callSlots.capacity < arity) {
+            callSlots = new CallSlots((int) arity);
+            current.set(callSlots);
+        }
+        return callSlots;
+    }
+
+    void setI32(int index, int value) {
+        MemoryAccess.setByteAtOffset(paramVals, index * VAL_SIZE, I32);
+        MemoryAccess.setIntAtOffset(paramVals, index * VAL_SIZE + OF_OFFSET, value);
+    }
+
+    void setI64(int index, long value) {
+        MemoryAccess.setByteAtOffset(paramVals, index * VAL_SIZE, I64);
+        MemoryAccess.setLongAtOffset(paramVals, index * VAL_SIZE + OF_OFFSET, value);
+    }
+
+    void setF32(int index, float value) {
+        MemoryAccess.setByteAtOffset(paramVals, index * VAL_SIZE, F32);
+        MemoryAccess.setFloatAtOffset(paramVals, index * VAL_SIZE + OF_OFFSET, value);
+    }
+
+    void setF64(int index, double value) {
+        MemoryAccess.setByteAtOffset(paramVals, index * VAL_SIZE, F64);
+        MemoryAccess.setDoubleAtOffset(paramVals, index * VAL_SIZE + OF_OFFSET, value);
+    }
+
+    int getI32(int index) {
+        return MemoryAccess.getIntAtOffset(resultVals, index * VAL_SIZE + OF_OFFSET);
+    }
+
+    long getI64(int index) {
+        return MemoryAccess.getLongAtOffset(resultVals, index * VAL_SIZE + OF_OFFSET);
+    }
+
+    float getF32(int index) {
+        return MemoryAccess.getFloatAtOffset(resultVals, index * VAL_SIZE + OF_OFFSET);
+    }
+
+    double getF64(int index) {
+        return MemoryAccess.getDoubleAtOffset(resultVals, index * VAL_SIZE + OF_OFFSET);
+    }
+
+    /**
+     * Sets a param of any numeric type, converting the value to that type.
+     */
+    void set(int index, ValType valType, Number value) {
+        switch (valType) {
+            case I32 -> setI32(index, value.intValue());
+            case I64 -> setI64(index, value.longValue());
+            case F32 -> setF32(index, value.floatValue());
+            case F64 -> setF64(index, value.doubleValue());
+            default -> throw new IllegalArgumentException("unsupported type " + valType);
+        }
+    }
+
+    /**
+     * Gets a result of any numeric type, boxed.
+     */
+    Number get(int index, ValType valType) {
+        return switch (valType) {
+            case I32 -> getI32(index);
+            case I64 -> getI64(index);
+            case F32 -> getF32(index);
+            case F64 -> getF64(index);
+            default -> throw new IllegalArgumentException("unsupported type " + valType);
+        };
+    }
+
+    // Global reads and writes, through a single wasm_val_t. The callers check the global's type.
+
+    int getGlobalI32(MemoryAddress global) {
+        WasmAPI.global_get(global, globalVal);
+        return MemoryAccess.getIntAtOffset(globalVal, OF_OFFSET);
+    }
+
+    long getGlobalI64(MemoryAddress global) {
+        WasmAPI.global_get(global, globalVal);
+        return MemoryAccess.getLongAtOffset(globalVal, OF_OFFSET);
+    }
+
+    float getGlobalF32(MemoryAddress global) {
+        WasmAPI.global_get(global, globalVal);
+        return MemoryAccess.getFloatAtOffset(globalVal, OF_OFFSET);
+    }
+
+    double getGlobalF64(MemoryAddress global) {
+        WasmAPI.global_get(global, globalVal);
+        return MemoryAccess.getDoubleAtOffset(globalVal, OF_OFFSET);
+    }
+
+    /**
+     * Gets a global of any numeric type, boxed.
+     */
+    Number getGlobal(MemoryAddress global, ValType valType) {
+        return switch (valType) {
+            case I32 -> getGlobalI32(global);
+            case I64 -> getGlobalI64(global);
+            case F32 -> getGlobalF32(global);
+            case F64 -> getGlobalF64(global);
+            default -> throw new IllegalArgumentException("unsupported type " + valType);
+        };
+    }
+
+    void setGlobalI32(MemoryAddress global, int value) {
+        MemoryAccess.setByteAtOffset(globalVal, 0, I32);
+        MemoryAccess.setIntAtOffset(globalVal, OF_OFFSET, value);
+        WasmAPI.global_set(global, globalVal);
+    }
+
+    void setGlobalI64(MemoryAddress global, long value) {
+        MemoryAccess.setByteAtOffset(globalVal, 0, I64);
+        MemoryAccess.setLongAtOffset(globalVal, OF_OFFSET, value);
+        WasmAPI.global_set(global, globalVal);
+    }
+
+    void setGlobalF32(MemoryAddress global, float value) {
+        MemoryAccess.setByteAtOffset(globalVal, 0, F32);
+        MemoryAccess.setFloatAtOffset(globalVal, OF_OFFSET, value);
+        WasmAPI.global_set(global, globalVal);
+    }
+
+    void setGlobalF64(MemoryAddress global, double value) {
+        MemoryAccess.setByteAtOffset(globalVal, 0, F64);
+        MemoryAccess.setDoubleAtOffset(globalVal, OF_OFFSET, value);
+        WasmAPI.global_set(global, globalVal);
+    }
+
+    /**
+     * Calls the function with the first paramCount slots as params, leaving the values in the result slots.
+     *
+     * @return the wasm_trap_t* from the call, which is NULL on success and owned by the caller otherwise.
+     */
+    MemoryAddress call(MemoryAddress func, int paramCount, int resultCount) {
+        wasm_val_vec_t.size$set(params, paramCount);
+        wasm_val_vec_t.size$set(results, resultCount);
+        return WasmAPI.func_call(func, paramsAddress, resultsAddress);
+    }
+
+    /**
+     * As {@link #call(MemoryAddress, int, int)}, but converting a trap into a {@link TrapException}.
+     */
+    void callOrThrow(MemoryAddress func, int paramCount, int resultCount) {
+        MemoryAddress trapAddress = call(func, paramCount, resultCount);
+        if (!MemoryAddress.NULL.equals(trapAddress)) {
+            throw TrapException.of(trapAddress);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CallSlots{" +
+                "capacity=" + capacity +
+                ", params=" + paramsAddress +
+                ", results=" + resultsAddress +
+                '}';
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.Addressable;
+import jdk.incubator.foreign.FunctionDescriptor;
+import jdk.incubator.foreign.MemoryAddress;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+
+import static jdk.incubator.foreign.CLinker.C_LONG_LONG;
+import static jdk.incubator.foreign.CLinker.C_POINTER;
+
+/**
+ * Hot path bindings as static final downcall handles, which the JIT can treat as constants.
+ * <p>
+ * None of these use a 'trivial call' linkage: the jdk.incubator.foreign CLinker we target has no such option,
+ * and wasm_func_call can in any case call back into Java via host functions.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+final class DirectHotCalls implements HotCalls {
+
+    private static final MethodHandle wasm_func_call = WasmAPI.downcallHandle("wasm_func_call",
+            MethodType.methodType(MemoryAddress.class, MemoryAddress.class, MemoryAddress.class, MemoryAddress.class),
+            FunctionDescriptor.of(C_POINTER, C_POINTER, C_POINTER, C_POINTER));
+
+    private static final MethodHandle wasm_global_get = WasmAPI.downcallHandle("wasm_global_get",
+            MethodType.methodType(void.class, MemoryAddress.class, MemoryAddress.class),
+            FunctionDescriptor.ofVoid(C_POINTER, C_POINTER));
+
+    private static final MethodHandle wasm_global_set = WasmAPI.downcallHandle("wasm_global_set",
+            MethodType.methodType(void.class, MemoryAddress.class, MemoryAddress.class),
+            FunctionDescriptor.ofVoid(C_POINTER, C_POINTER));
+
+    private static final MethodHandle wasm_memory_data = WasmAPI.downcallHandle("wasm_memory_data",
+            MethodType.methodType(MemoryAddress.class, MemoryAddress.class),
+            FunctionDescriptor.of(C_POINTER, C_POINTER));
+
+    // size_t is taken to be 64 bits, as pointers are on every platform we support. C_LONG would be 32 bits on Windows.
+    private static final MethodHandle wasm_memory_data_size = WasmAPI.downcallHandle("wasm_memory_data_size",
+            MethodType.methodType(long.class, MemoryAddress.class),
+            FunctionDescriptor.of(C_LONG_LONG, C_POINTER));
+
+    @Override
+    public MemoryAddress func_call(Addressable x0, Addressable args, Addressable results) {
+        try {
+            return (MemoryAddress) wasm_func_call.invokeExact(x0.address(), args.address(), results.address());
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    @Override
+    public void global_get(Addressable x0, Addressable out) {
+        try {
+            wasm_global_get.invokeExact(x0.address(), out.address());
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    @Override
+    public void global_set(Addressable x0, Addressable x1) {
+        try {
+            wasm_global_set.invokeExact(x0.address(), x1.address());
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    @Override
+    public MemoryAddress memory_data(Addressable x0) {
+        try {
+            return (MemoryAddress) wasm_memory_data.invokeExact(x0.address());
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    @Override
+    public long memory_data_size(Addressable x0) {
+        try {
+            return (long) wasm_memory_data_size.invokeExact(x0.address());
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DirectHotCalls{}";
+    }
+}
@@ -26,6 +26,7 @@ public class Engine implements Addressable, AutoCloseable {
 
     private static final Logger logger = Logger.getLogger(Engine.class);
 
+    private final EngineConfig config;
     private final MemoryAddress address;
 
     public Engine() {
@@ -33,6 +34,7 @@ public class Engine implements Addressable, AutoCloseable {
             logger.tracev("entry");
         }
 
+        config = EngineConfig.DEFAULT;
         address = WasmAPI.engine_new();
 
         if (logger.isTraceEnabled()) {
@@ -40,7 +42,30 @@ public class Engine implements Addressable, AutoCloseable {
         }
     }
 
-    // TODO wasm_config_t optional arg
+    public Engine(EngineConfig config) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}", config);
+        }
+
+        this.config = config;
+        address = WasmAPI.engine_new_with_config(config.newConfig()); // takes ownership of the wasm_config_t
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", this);
+        }
+    }
+
+    public EngineConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return a stable description of the configuration this engine compiles with,
+     * which must match for compiled code to be shared between engines, e.g. via a {@link ModuleCache}.
+     */
+    public String getConfigFingerprint() {
+        return config.fingerprint();
+    }
 
     public Store newStore() {
         return new Store(this);
@@ -59,7 +84,8 @@ public class Engine implements Addressable, AutoCloseable {
     @Override
     public String toString() {
         return "Engine{" +
-                "address=" + address +
+                "config=" + config +
+                ", address=" + address +
                 '}';
     }
 }
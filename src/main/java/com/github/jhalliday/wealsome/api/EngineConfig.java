@@ -0,0 +1,243 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.CLinker;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.ResourceScope;
+import org.jboss.logging.Logger;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * Compilation and runtime settings for an {@link Engine}. (wasm_config_t* plus the wasmtime extensions)
+ * <p>
+ * Unset options keep the wasmtime defaults. Create with {@link #builder()}.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ * @see <a href="https://docs.rs/wasmtime/0.30.0/wasmtime/struct.Config.html">Config</a>
+ */
+public class EngineConfig {
+
+    private static final Logger logger = Logger.getLogger(EngineConfig.class);
+
+    /**
+     * Cranelift optimization level. (wasmtime_opt_level_t)
+     */
+    public enum OptLevel {
+        NONE(0),
+        SPEED(1),
+        SPEED_AND_SIZE(2);
+
+        // the WASMTIME_OPT_LEVEL_* values from wasmtime/config.h
+        private final int cValue;
+
+        OptLevel(int cValue) {
+            this.cValue = cValue;
+        }
+
+        /**
+         * @return the wasmtime_opt_level_t for this level.
+         */
+        public byte level() {
+            return (byte) cValue;
+        }
+    }
+
+    public static final EngineConfig DEFAULT = builder().build();
+
+    private final OptLevel optLevel;
+    private final Boolean parallelCompilation;
+    private final Boolean debugInfo;
+    private final Long maxWasmStack;
+    private final Long staticMemoryMaximumSize;
+    private final Long staticMemoryGuardSize;
+    private final Long dynamicMemoryGuardSize;
+    private final Path cacheConfig;
+
+    private EngineConfig(Builder builder) {
+        optLevel = builder.optLevel;
+        parallelCompilation = builder.parallelCompilation;
+        debugInfo = builder.debugInfo;
+        maxWasmStack = builder.maxWasmStack;
+        staticMemoryMaximumSize = builder.staticMemoryMaximumSize;
+        staticMemoryGuardSize = builder.staticMemoryGuardSize;
+        dynamicMemoryGuardSize = builder.dynamicMemoryGuardSize;
+        cacheConfig = builder.cacheConfig;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a wasm_config_t with these settings applied.
+     * Ownership passes to the caller, normally by way of engine_new_with_config.
+     */
+    MemoryAddress newConfig() {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry {0}", this);
+        }
+
+        MemoryAddress config = WasmAPI.config_new();
+        try {
+            if (optLevel != null) {
+                WasmtimeAPI.config_cranelift_opt_level_set(config, optLevel.level());
+            }
+            if (parallelCompilation != null) {
+                WasmtimeAPI.config_parallel_compilation_set(config, toByte(parallelCompilation));
+            }
+            if (debugInfo != null) {
+                WasmtimeAPI.config_debug_info_set(config, toByte(debugInfo));
+            }
+            if (maxWasmStack != null) {
+                WasmtimeAPI.config_max_wasm_stack_set(config, maxWasmStack);
+            }
+            if (staticMemoryMaximumSize != null) {
+                WasmtimeAPI.config_static_memory_maximum_size_set(config, staticMemoryMaximumSize);
+            }
+            if (staticMemoryGuardSize != null) {
+                WasmtimeAPI.config_static_memory_guard_size_set(config, staticMemoryGuardSize);
+            }
+            if (dynamicMemoryGuardSize != null) {
+                WasmtimeAPI.config_dynamic_memory_guard_size_set(config, dynamicMemoryGuardSize);
+            }
+            if (cacheConfig != null) {
+                try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+                    String error = WasmtimeAPI.consumeError(WasmtimeAPI.config_cache_config_load(config,
+                            CLinker.toCString(cacheConfig.toString(), resourceScope)));
+                    if (error != null) {
+                        throw new IllegalArgumentException("unable to load cache config " + cacheConfig + ": " + error);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            WasmAPI.config_delete(config);
+            throw e;
+        }
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", config);
+        }
+        return config;
+    }
+
+    private static byte toByte(boolean b) {
+        return b ? (byte) 1 : (byte) 0;
+    }
+
+    /**
+     * @return a stable description of the settings that affect compiled code, for matching compiled artifacts.
+     */
+    public String fingerprint() {
+        Map<String, Object> settings = new TreeMap<>();
+        settings.put("optLevel", optLevel);
+        settings.put("debugInfo", debugInfo);
+        settings.put("staticMemoryMaximumSize", staticMemoryMaximumSize);
+        settings.put("staticMemoryGuardSize", staticMemoryGuardSize);
+        settings.put("dynamicMemoryGuardSize", dynamicMemoryGuardSize);
+        StringJoiner stringJoiner = new StringJoiner(",");
+        settings.forEach((k, v) -> {
+            if (v != null) {
+                stringJoiner.add(k + "=" + v);
+            }
+        });
+        return stringJoiner.length() == 0 ? "default" : stringJoiner.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "EngineConfig{" +
+                "optLevel=" + optLevel +
+                ", parallelCompilation=" + parallelCompilation +
+                ", debugInfo=" + debugInfo +
+                ", maxWasmStack=" + maxWasmStack +
+                ", staticMemoryMaximumSize=" + staticMemoryMaximumSize +
+                ", staticMemoryGuardSize=" + staticMemoryGuardSize +
+                ", dynamicMemoryGuardSize=" + dynamicMemoryGuardSize +
+                ", cacheConfig=" + cacheConfig +
+                '}';
+    }
+
+    public static class Builder {
+
+        private OptLevel optLevel;
+        private Boolean parallelCompilation;
+        private Boolean debugInfo;
+        private Long maxWasmStack;
+        private Long staticMemoryMaximumSize;
+        private Long staticMemoryGuardSize;
+        private Long dynamicMemoryGuardSize;
+        private Path cacheConfig;
+
+        private Builder() {
+        }
+
+        public Builder optLevel(OptLevel optLevel) {
+            this.optLevel = optLevel;
+            return this;
+        }
+
+        /**
+         * Compile functions on multiple threads. Requires a wasmtime version that supports it.
+         */
+        public Builder parallelCompilation(boolean parallelCompilation) {
+            this.parallelCompilation = parallelCompilation;
+            return this;
+        }
+
+        public Builder debugInfo(boolean debugInfo) {
+            this.debugInfo = debugInfo;
+            return this;
+        }
+
+        public Builder maxWasmStack(long bytes) {
+            this.maxWasmStack = bytes;
+            return this;
+        }
+
+        /**
+         * Memories that may grow beyond this size are 'dynamic': bounds checked in code rather than by a reserved
+         * address range. Zero makes all memories dynamic, saving address space at some runtime cost.
+         */
+        public Builder staticMemoryMaximumSize(long bytes) {
+            this.staticMemoryMaximumSize = bytes;
+            return this;
+        }
+
+        public Builder staticMemoryGuardSize(long bytes) {
+            this.staticMemoryGuardSize = bytes;
+            return this;
+        }
+
+        public Builder dynamicMemoryGuardSize(long bytes) {
+            this.dynamicMemoryGuardSize = bytes;
+            return this;
+        }
+
+        /**
+         * Enable wasmtime's own compiled code cache, configured by the given toml file.
+         */
+        public Builder cacheConfig(Path cacheConfig) {
+            this.cacheConfig = cacheConfig;
+            return this;
+        }
+
+        public EngineConfig build() {
+            return new EngineConfig(this);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.ResourceScope;
+import org.jboss.logging.Logger;
+
+import java.util.*;
+
+/**
+ * The exports of a module, keyed by name.
+ * Built once per {@link Module} and shared by all its instances, so that finding an export
+ * is a hash lookup rather than a walk over the native export types.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class ExportIndex {
+
+    private static final Logger logger = Logger.getLogger(ExportIndex.class);
+
+    /**
+     * One export. The params and results are empty unless the kind is WASM_EXTERN_FUNC.
+     *
+     * @param position the index of the export in the instance's exports vec.
+     */
+    public record Entry(String name, int position, ExternKind kind, List<ValType> params, List<ValType> results) {
+    }
+
+    private final Map<String, Entry> entries;
+
+    ExportIndex(Module module) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}", module);
+        }
+
+        Map<String, Entry> map = new LinkedHashMap<>();
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ExportTypeVec exportTypeVec = new ExportTypeVec(resourceScope);
+            module.exports(exportTypeVec);
+            try {
+                for (int i = 0; i < exportTypeVec.size(); i++) {
+                    // the name is borrowed from the export type, so is not closed here.
+                    String name = exportTypeVec.name(i).asString();
+                    ExternType externType = exportTypeVec.getExternType(i);
+                    List<ValType> params = List.of();
+                    List<ValType> results = List.of();
+                    if (externType instanceof FuncType funcType) {
+                        params = valTypes(funcType.paramTypes());
+                        results = valTypes(funcType.resultTypes());
+                    }
+                    map.put(name, new Entry(name, i, externType.getKind(), params, results));
+                }
+            } finally {
+                WasmAPI.exporttype_vec_delete(exportTypeVec);
+            }
+        }
+        entries = Collections.unmodifiableMap(map);
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", this);
+        }
+    }
+
+    private static List<ValType> valTypes(ValtypeVec valtypeVec) {
+        List<ValType> valTypes = new ArrayList<>((int) valtypeVec.size());
+        for (int i = 0; i < valtypeVec.size(); i++) {
+            valTypes.add(valtypeVec.get(i));
+        }
+        return List.copyOf(valTypes);
+    }
+
+    /**
+     * @return the export with the given name, or null if there is none.
+     */
+    public Entry get(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * @return the exports, in the order the module declares them.
+     */
+    public Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ExportIndex{" +
+                "entries=" + entries.values() +
+                '}';
+    }
+}
@@ -29,11 +29,13 @@ public class ExternVec implements Addressable, AutoCloseable {
 
     private final ResourceScope resourceScope;
     private final MemorySegment extern_vec_t;
+    private final boolean shouldDelete;
 
     public ExternVec(ResourceScope resourceScope) {
         this.resourceScope = resourceScope;
         extern_vec_t = wasm_extern_vec_t.allocate(resourceScope);
         WasmAPI.extern_vec_new_empty(extern_vec_t);
+        shouldDelete = true;
     }
 
     public ExternVec(ResourceScope resourceScope, List<? extends Extern> externList) {
@@ -47,6 +49,26 @@ public class ExternVec implements Addressable, AutoCloseable {
         }
 
         WasmAPI.extern_vec_new(extern_vec_t, externList.size(), memorySegment.address());
+        shouldDelete = true;
+    }
+
+    /**
+     * Creates the vec in the arena, valid until the arena is closed.
+     * Unlike the other constructors, the vec does not take ownership of the externs, and close() does not delete them.
+     */
+    public ExternVec(CallArena callArena, List<? extends Extern> externList) {
+        this.resourceScope = callArena.scope();
+        extern_vec_t = wasm_extern_vec_t.allocate(callArena);
+
+        MemorySegment memorySegment = callArena.allocateArray(WasmAPI.pointerMemoryLayout, externList.size());
+        for (int i = 0; i < externList.size(); i++) {
+            MemorySegment slice = memorySegment.asSlice(WasmAPI.pointerMemoryLayout.byteSize() * i);
+            WasmAPI.ptr$VH.set(slice, externList.get(i).address());
+        }
+
+        wasm_extern_vec_t.size$set(extern_vec_t, externList.size());
+        wasm_extern_vec_t.data$set(extern_vec_t, memorySegment.address());
+        shouldDelete = false;
     }
 
     public WasmFunc asFunc(int index) {
@@ -55,6 +77,19 @@ public class ExternVec implements Addressable, AutoCloseable {
         return func;
     }
 
+    public Memory asMemory(int index) {
+        MemoryAddress externAddress = WasmAPI.ptr$get(data().asSegment(WasmAPI.pointerMemoryLayout.byteSize() * size(), resourceScope), index);
+        return new Memory(resourceScope, WasmAPI.extern_as_memory(externAddress));
+    }
+
+    /**
+     * @return the global, borrowed from this vec.
+     */
+    public Global asGlobal(int index) {
+        MemoryAddress externAddress = WasmAPI.ptr$get(data().asSegment(WasmAPI.pointerMemoryLayout.byteSize() * size(), resourceScope), index);
+        return new Global(resourceScope, WasmAPI.extern_as_global(externAddress));
+    }
+
     public long size() {
         return wasm_extern_vec_t.size$get(extern_vec_t);
     }
@@ -96,6 +131,8 @@ public class ExternVec implements Addressable, AutoCloseable {
 //        wasm_extern_vec_t.size$set(extern_vec_t, 0);
         //wasm_extern_vec_t.data$set(extern_vec_t, MemoryAddress.NULL);
 
-        WasmAPI.extern_vec_delete(extern_vec_t);
+        if (shouldDelete) {
+            WasmAPI.extern_vec_delete(extern_vec_t);
+        }
     }
 }
@@ -12,14 +12,16 @@
  */
 package com.github.jhalliday.wealsome.api;
 
+import com.github.jhalliday.wealsome.generated.wasm_byte_vec_t;
 import com.github.jhalliday.wealsome.generated.wasm_frame_vec_t;
-import com.github.jhalliday.wealsome.generated.wasm_valtype_vec_t;
 import jdk.incubator.foreign.Addressable;
 import jdk.incubator.foreign.MemoryAddress;
 import jdk.incubator.foreign.MemorySegment;
 import jdk.incubator.foreign.ResourceScope;
 import org.jboss.logging.Logger;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * @author Jonathan Halliday (jonathan.halliday@redhat.com)
  */
@@ -27,6 +29,9 @@ public class FrameVec implements Addressable, AutoCloseable {
 
     private static final Logger logger = Logger.getLogger(FrameVec.class);
 
+    private static final boolean FUNC_NAMES_AVAILABLE = WasmtimeAPI.isAvailable("wasmtime_frame_func_name");
+    private static final boolean MODULE_NAMES_AVAILABLE = WasmtimeAPI.isAvailable("wasmtime_frame_module_name");
+
     private final ResourceScope resourceScope;
     private final MemorySegment frame_vec_t;
 
@@ -36,7 +41,68 @@ public class FrameVec implements Addressable, AutoCloseable {
     }
 
     public long size() {
-        return wasm_valtype_vec_t.size$get(frame_vec_t);
+        return wasm_frame_vec_t.size$get(frame_vec_t);
+    }
+
+    /**
+     * @return the index'th wasm_frame_t*, owned by this vec. Frame 0 is the innermost, i.e. the most recent call.
+     */
+    public MemoryAddress get(int index) {
+        MemoryAddress data = wasm_frame_vec_t.data$get(frame_vec_t);
+        return WasmAPI.ptr$get(data.asSegment(WasmAPI.pointerMemoryLayout.byteSize() * size(), resourceScope), index);
+    }
+
+    /**
+     * @return the index of the function in its module's function index space.
+     */
+    public int getFuncIndex(int index) {
+        return WasmAPI.frame_func_index(get(index));
+    }
+
+    /**
+     * @return the offset of the frame's current instruction from the start of its function.
+     */
+    public long getFuncOffset(int index) {
+        return WasmAPI.frame_func_offset(get(index));
+    }
+
+    /**
+     * @return the offset of the frame's current instruction from the start of the module binary.
+     */
+    public long getModuleOffset(int index) {
+        return WasmAPI.frame_module_offset(get(index));
+    }
+
+    /**
+     * @return the function's name from the module's name section, or null if it has none
+     * or the wasmtime version does not provide names.
+     */
+    public String getFuncName(int index) {
+        if (!FUNC_NAMES_AVAILABLE) {
+            return null;
+        }
+        return asString(WasmtimeAPI.frame_func_name(get(index)));
+    }
+
+    /**
+     * @return the name of the frame's module from its name section, or null if it has none
+     * or the wasmtime version does not provide names.
+     */
+    public String getModuleName(int index) {
+        if (!MODULE_NAMES_AVAILABLE) {
+            return null;
+        }
+        return asString(WasmtimeAPI.frame_module_name(get(index)));
+    }
+
+    // reads a borrowed wasm_name_t*, which may be NULL.
+    private String asString(MemoryAddress name) {
+        if (MemoryAddress.NULL.equals(name)) {
+            return null;
+        }
+        MemorySegment name_t = name.asSegment(wasm_byte_vec_t.sizeof(), resourceScope);
+        byte[] bytes = wasm_byte_vec_t.data$get(name_t).asSegment(wasm_byte_vec_t.size$get(name_t), resourceScope).toByteArray();
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
     @Override
@@ -12,7 +12,6 @@
  */
 package com.github.jhalliday.wealsome.api;
 
-import com.github.jhalliday.wealsome.generated.Wasm;
 import com.github.jhalliday.wealsome.generated.wasm_func_callback_t;
 import jdk.incubator.foreign.MemoryAddress;
 import org.jboss.logging.Logger;
@@ -27,16 +26,107 @@ public class Func extends Extern implements AutoCloseable {
 
     private static final Logger logger = Logger.getLogger(Func.class);
 
+    private final String name;
+
     public Func(Store store, FuncType funcType, wasm_func_callback_t callback) {
-        super(null, WasmAPI.func_new(store, funcType, wasm_func_callback_t.allocate(callback)));
+        this(store, funcType, callback, null);
+    }
+
+    /**
+     * @param name identifies the function in {@link WasmEvents}, as the target of host callbacks and
+     *             the export name of calls. May be null.
+     */
+    public Func(Store store, FuncType funcType, wasm_func_callback_t callback, String name) {
+        super(null, WasmAPI.func_new(store, funcType, wasm_func_callback_t.allocate(instrumented(store, name, callback))));
+        this.name = name;
     }
 
     public Func(Store store, FuncType funcType, MemoryAddress stub) {
         super(null, WasmAPI.func_new(store, funcType, stub));
+        name = null;
     }
 
+    Func(MemoryAddress address) {
+        super(null, address);
+        name = null;
+    }
+
+    /**
+     * @return the name given on creation, or null.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * As {@link #tryApply(ValVec, ValVec)}, for callers that check {@link TrapResult#current()} themselves.
+     */
     public void apply(ValVec params, ValVec results) {
-        Wasm.wasm_func_call(address, params.address(), results.address());
+        tryApply(params, results);
+    }
+
+    /**
+     * Calls the function. A trap is not decoded, but held in the calling thread's {@link TrapResult#current()}
+     * until the next trap on the thread replaces it.
+     *
+     * @return true if the call completed, false if it trapped.
+     */
+    public boolean tryApply(ValVec params, ValVec results) {
+        MemoryAddress trapAddress;
+        WasmEvents.CallEvent callEvent = new WasmEvents.CallEvent();
+        if (!WasmMetrics.ENABLED && !callEvent.isEnabled()) {
+            trapAddress = WasmAPI.func_call(address, params.address(), results.address());
+        } else {
+            long start = System.nanoTime();
+            callEvent.begin();
+            trapAddress = WasmAPI.func_call(address, params.address(), results.address());
+            long nanos = System.nanoTime() - start;
+            boolean trapped = !MemoryAddress.NULL.equals(trapAddress);
+            callEvent.end();
+            if (callEvent.shouldCommit()) {
+                callEvent.exportName = name;
+                callEvent.trapped = trapped;
+                callEvent.commit();
+            }
+            if (WasmMetrics.ENABLED) {
+                WasmMetrics.getSink().call(name == null ? WasmMetrics.UNNAMED : name, nanos, trapped);
+            }
+        }
+        if (MemoryAddress.NULL.equals(trapAddress)) {
+            return true;
+        }
+        TrapResult.current().set(trapAddress);
+        return false;
+    }
+
+    // as HostFuncs does for the callbacks it binds, the recorder may be started at any time, so it is checked per call.
+    private static wasm_func_callback_t instrumented(Store store, String name, wasm_func_callback_t callback) {
+        MemoryAddress storeAddress = store.address();
+        return (params, results) -> {
+            GuestProfiler guestProfiler = GuestProfiler.active();
+            if (guestProfiler != null) {
+                guestProfiler.onHostCallback(storeAddress);
+            }
+            WasmEvents.HostCallbackEvent hostCallbackEvent = new WasmEvents.HostCallbackEvent();
+            if (!WasmMetrics.ENABLED && !hostCallbackEvent.isEnabled()) {
+                return callback.apply(params, results);
+            }
+            long start = System.nanoTime();
+            hostCallbackEvent.begin();
+            MemoryAddress trapAddress = callback.apply(params, results);
+            long nanos = System.nanoTime() - start;
+            boolean trapped = !MemoryAddress.NULL.equals(trapAddress);
+            hostCallbackEvent.end();
+            if (hostCallbackEvent.shouldCommit()) {
+                hostCallbackEvent.target = name;
+                hostCallbackEvent.trapped = trapped;
+                hostCallbackEvent.commit();
+            }
+            if (WasmMetrics.ENABLED) {
+                WasmMetrics.getSink().hostCallback(nanos, trapped);
+            }
+            return trapAddress;
+        };
     }
 
     @Override
@@ -35,8 +35,12 @@ public class FuncType extends ExternType implements AutoCloseable {
     }
 
     protected FuncType(ResourceScope resourceScope, MemoryAddress address) {
+        this(resourceScope, address, false);
+    }
+
+    FuncType(ResourceScope resourceScope, MemoryAddress address, boolean own) {
         super(resourceScope, address);
-        own = false;
+        this.own = own;
     }
 
     @Override
@@ -54,6 +58,25 @@ public class FuncType extends ExternType implements AutoCloseable {
         return new ValtypeVec(resourceScope, memoryAddress);
     }
 
+    /**
+     * @return true if the params and results of this type are exactly the given ones.
+     */
+    public boolean matches(List<ValType> params, List<ValType> results) {
+        return matches(paramTypes(), params) && matches(resultTypes(), results);
+    }
+
+    private static boolean matches(ValtypeVec valtypeVec, List<ValType> valTypes) {
+        if (valtypeVec.size() != valTypes.size()) {
+            return false;
+        }
+        for (int i = 0; i < valTypes.size(); i++) {
+            if (valtypeVec.get(i) != valTypes.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static FuncType new_0_0(ResourceScope resourceScope) {
         ValtypeVec paramsValtypeVec = new ValtypeVec(resourceScope);
         ValtypeVec resultsValtypeVec = new ValtypeVec(resourceScope);
@@ -66,6 +89,12 @@ public class FuncType extends ExternType implements AutoCloseable {
         return new FuncType(paramsValtypeVec, resultsValtypeVec);
     }
 
+    public static FuncType new_2_1(ResourceScope resourceScope, ValType paramType0, ValType paramType1, ValType resultType) {
+        ValtypeVec paramsValtypeVec = new ValtypeVec(resourceScope, List.of(paramType0, paramType1));
+        ValtypeVec resultsValtypeVec = new ValtypeVec(resourceScope, List.of(resultType));
+        return new FuncType(paramsValtypeVec, resultsValtypeVec);
+    }
+
     public static FuncType new_0_1(ResourceScope resourceScope, ValType resultType) {
         ValtypeVec paramsValtypeVec = new ValtypeVec(resourceScope);
         ValtypeVec resultsValtypeVec = new ValtypeVec(resourceScope, List.of(resultType));
@@ -0,0 +1,55 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import com.github.jhalliday.wealsome.generated.Wasm;
+import jdk.incubator.foreign.Addressable;
+import jdk.incubator.foreign.MemoryAddress;
+
+/**
+ * Hot path calls via the jextract generated bindings, for comparison with {@link DirectHotCalls}.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+final class GeneratedHotCalls implements HotCalls {
+
+    @Override
+    public MemoryAddress func_call(Addressable x0, Addressable args, Addressable results) {
+        return Wasm.wasm_func_call(x0, args, results);
+    }
+
+    @Override
+    public void global_get(Addressable x0, Addressable out) {
+        Wasm.wasm_global_get(x0, out);
+    }
+
+    @Override
+    public void global_set(Addressable x0, Addressable x1) {
+        Wasm.wasm_global_set(x0, x1);
+    }
+
+    @Override
+    public MemoryAddress memory_data(Addressable x0) {
+        return Wasm.wasm_memory_data(x0);
+    }
+
+    @Override
+    public long memory_data_size(Addressable x0) {
+        return Wasm.wasm_memory_data_size(x0);
+    }
+
+    @Override
+    public String toString() {
+        return "GeneratedHotCalls{}";
+    }
+}
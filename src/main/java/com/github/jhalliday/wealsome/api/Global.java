@@ -12,10 +12,16 @@
  */
 package com.github.jhalliday.wealsome.api;
 
+import jdk.incubator.foreign.MemoryAddress;
 import jdk.incubator.foreign.ResourceScope;
 import org.jboss.logging.Logger;
 
 /**
+ * A WebAssembly global variable, either created by the host or exported from an Instance.
+ * <p>
+ * The typed accessors read and write through the calling thread's preallocated {@link CallSlots},
+ * so polling a global, e.g. a counter, does no allocation. The type and mutability are read once, on construction.
+ *
  * @author Jonathan Halliday (jonathan.halliday@redhat.com)
  */
 public class Global extends Extern implements AutoCloseable {
@@ -25,12 +31,33 @@ public class Global extends Extern implements AutoCloseable {
     private final Store store;
     private final GlobalType globalType;
     private final Val val;
+    private final ValType content;
+    private final boolean mutable;
+    private final boolean shouldDelete;
 
     public Global(ResourceScope resourceScope, Store store, GlobalType globalType, Val val) {
         super(resourceScope, WasmAPI.global_new(store, globalType, val));
         this.store = store;
         this.globalType = globalType;
         this.val = val;
+        content = globalType.getContent();
+        mutable = globalType.isMutable();
+        shouldDelete = true;
+    }
+
+    /**
+     * @param address a wasm_global_t*, which this does not take ownership of.
+     */
+    Global(ResourceScope resourceScope, MemoryAddress address) {
+        super(resourceScope, address);
+        store = null;
+        globalType = null;
+        val = null;
+        MemoryAddress globalTypeAddress = WasmAPI.global_type(address);
+        content = ValType.valueOf(WasmAPI.globaltype_content(globalTypeAddress));
+        mutable = WasmAPI.globaltype_mutability(globalTypeAddress) != 0;
+        WasmAPI.globaltype_delete(globalTypeAddress);
+        shouldDelete = false;
     }
 
     @Override
@@ -38,9 +65,91 @@ public class Global extends Extern implements AutoCloseable {
         return ExternKind.WASM_EXTERN_GLOBAL;
     }
 
+    public ValType getContent() {
+        return content;
+    }
+
+    public boolean isMutable() {
+        return mutable;
+    }
+
+    public int getInt() {
+        checkType(ValType.I32);
+        return CallSlots.current().getGlobalI32(address);
+    }
+
+    public long getLong() {
+        checkType(ValType.I64);
+        return CallSlots.current().getGlobalI64(address);
+    }
+
+    public float getFloat() {
+        checkType(ValType.F32);
+        return CallSlots.current().getGlobalF32(address);
+    }
+
+    public double getDouble() {
+        checkType(ValType.F64);
+        return CallSlots.current().getGlobalF64(address);
+    }
+
+    /**
+     * @return the value of a numeric global, boxed.
+     */
+    public Number getValue() {
+        if (content == null || !content.isNumeric()) {
+            throw new IllegalArgumentException("global is " + content + ", not a number");
+        }
+        return CallSlots.current().getGlobal(address, content);
+    }
+
+    public void setInt(int value) {
+        checkSettable(ValType.I32);
+        CallSlots.current().setGlobalI32(address, value);
+    }
+
+    public void setLong(long value) {
+        checkSettable(ValType.I64);
+        CallSlots.current().setGlobalI64(address, value);
+    }
+
+    public void setFloat(float value) {
+        checkSettable(ValType.F32);
+        CallSlots.current().setGlobalF32(address, value);
+    }
+
+    public void setDouble(double value) {
+        checkSettable(ValType.F64);
+        CallSlots.current().setGlobalF64(address, value);
+    }
+
+    private void checkType(ValType valType) {
+        if (content != valType) {
+            throw new IllegalArgumentException("global is " + content + " not " + valType);
+        }
+    }
+
+    // wasm_global_set silently ignores an invalid write, so check here instead.
+    private void checkSettable(ValType valType) {
+        checkType(valType);
+        if (!mutable) {
+            throw new IllegalStateException("global is immutable");
+        }
+    }
+
     @Override
     public void close() {
-        WasmAPI.global_delete(address);
+        if (shouldDelete) {
+            WasmAPI.global_delete(address);
+        }
     }
 
+    @Override
+    public String toString() {
+        return "Global{" +
+                "address=" + address +
+                ", content=" + content +
+                ", mutable=" + mutable +
+                '}';
+    }
 }
@@ -27,7 +27,7 @@ public class GlobalType extends ExternType implements AutoCloseable {
     public GlobalType(ResourceScope resourceScope, ValType valType, boolean isConst) {
         super(resourceScope);
 
-        MemoryAddress valTypeAddress = WasmAPI.valtype_new((byte) valType.ordinal()); // dirty tricks...
+        MemoryAddress valTypeAddress = WasmAPI.valtype_new(valType.kind());
         this.address = WasmAPI.globaltype_new(valTypeAddress, isConst ? (byte) Wasm.WASM_CONST() : (byte) Wasm.WASM_VAR());
     }
 
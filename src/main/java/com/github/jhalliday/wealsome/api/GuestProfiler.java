@@ -0,0 +1,238 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.ResourceScope;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A sampling profiler for guest (wasm) code, aggregating stacks for flame graphs.
+ * <p>
+ * The C API offers no way to interrupt a running call and walk its stack, but wasmtime does capture the guest stack
+ * whenever a trap is created. So the profiler samples at the points where the guest hands control to the host:
+ * on each tick of the sampling interval it arms a flag, and the next host callback (of those created via
+ * {@link Store#newIntUnaryFunc} and its siblings, or {@link Func}) creates and discards a trap to read the stack of the calling guest code.
+ * Traps raised by the guest itself are also recorded, since their trace is available anyway.
+ * Samples are therefore biased towards code that calls the host, and guest code that never does so is not seen.
+ * <p>
+ * Frames are named from the module's name section, via wasmtime where it supports that,
+ * and qualified by the module's own name where it has one, as module!function.
+ * Else they are named from the names given to the constructor, see {@link NameSection}, else by function index.
+ * The C API cannot say which module a frame belongs to, so the names given to the constructor are applied
+ * to frames from every module: supply them only when profiling a single module.
+ * Only one profiler may be active at a time.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class GuestProfiler implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(GuestProfiler.class);
+
+    private static volatile GuestProfiler active;
+
+    private final Map<Integer, String> names;
+    private final Duration interval;
+    private final ScheduledExecutorService ticker;
+    private final Map<String, LongAdder> stacks = new ConcurrentHashMap<>();
+    private final LongAdder sampleCount = new LongAdder();
+
+    private volatile boolean sampleDue;
+
+    public GuestProfiler(Duration interval) {
+        this(Map.of(), interval);
+    }
+
+    /**
+     * Starts profiling.
+     *
+     * @param names    function names by index, for when wasmtime cannot provide them. Applied to every module.
+     * @param interval the minimum time between samples.
+     * @throws IllegalArgumentException if the interval is not positive.
+     * @throws IllegalStateException    if another profiler is already active.
+     */
+    public GuestProfiler(Map<Integer, String> names, Duration interval) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0} names, {1}", names.size(), interval);
+        }
+
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("interval must be positive, not " + interval);
+        }
+        this.names = names;
+        this.interval = interval;
+
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wealsome-guest-profiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // only install this as the active profiler once it is fully started, so a failure cannot leave it stuck there.
+        synchronized (GuestProfiler.class) {
+            try {
+                if (active != null) {
+                    throw new IllegalStateException("a profiler is already active");
+                }
+                long nanos = interval.toNanos();
+                ticker.scheduleAtFixedRate(() -> sampleDue = true, nanos, nanos, TimeUnit.NANOSECONDS);
+            } catch (RuntimeException e) {
+                ticker.shutdownNow();
+                throw e;
+            }
+            active = this;
+        }
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", this);
+        }
+    }
+
+    /**
+     * @return the active profiler, or null. Read on each host callback, so kept as cheap as possible.
+     */
+    static GuestProfiler active() {
+        return active;
+    }
+
+    /**
+     * Called on entry to a host callback. Samples the calling guest stack if a sample is due.
+     *
+     * @param store the wasm_store_t* the callback is running in.
+     */
+    void onHostCallback(MemoryAddress store) {
+        if (!sampleDue) {
+            return;
+        }
+        sampleDue = false;
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope();
+             ByteVec message = new ByteVec(resourceScope, new byte[]{0})) {
+            MemoryAddress trapAddress = WasmAPI.trap_new(store, message);
+            try {
+                record(resourceScope, trapAddress);
+            } finally {
+                WasmAPI.trap_delete(trapAddress);
+            }
+        }
+    }
+
+    /**
+     * Called when the guest traps, with the trap before it is deleted.
+     */
+    void onTrap(MemoryAddress trapAddress) {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            record(resourceScope, trapAddress);
+        }
+    }
+
+    private void record(ResourceScope resourceScope, MemoryAddress trapAddress) {
+        try (FrameVec frameVec = new FrameVec(resourceScope)) {
+            WasmAPI.trap_trace(trapAddress, frameVec);
+            int size = (int) frameVec.size();
+            if (size == 0) {
+                return;
+            }
+            // collapsed stacks run from the outermost frame to the innermost, whereas the trace is innermost first.
+            StringBuilder stack = new StringBuilder();
+            for (int i = size - 1; i >= 0; i--) {
+                if (stack.length() > 0) {
+                    stack.append(';');
+                }
+                stack.append(frameName(frameVec, i));
+            }
+            stacks.computeIfAbsent(stack.toString(), key -> new LongAdder()).increment();
+            sampleCount.increment();
+        }
+    }
+
+    private String frameName(FrameVec frameVec, int index) {
+        String name = frameVec.getFuncName(index);
+        if (name == null) {
+            int funcIndex = frameVec.getFuncIndex(index);
+            name = names.getOrDefault(funcIndex, "wasm-function[" + funcIndex + "]");
+        }
+        String moduleName = frameVec.getModuleName(index);
+        if (moduleName != null) {
+            name = moduleName + "!" + name;
+        }
+        // the collapsed format uses these as separators.
+        return name.replace(';', ':').replace(' ', '_');
+    }
+
+    /**
+     * @return the number of stacks recorded.
+     */
+    public long getSampleCount() {
+        return sampleCount.sum();
+    }
+
+    /**
+     * @return the count of each distinct stack, as frame names separated by ';', outermost first.
+     */
+    public Map<String, Long> getStacks() {
+        Map<String, Long> counts = new TreeMap<>();
+        stacks.forEach((stack, count) -> counts.put(stack, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Writes the stacks in the collapsed format, one "frame;frame;frame count" line per stack,
+     * as read by flamegraph.pl and similar tools.
+     */
+    public void writeCollapsed(Writer writer) throws IOException {
+        for (Map.Entry<String, Long> entry : getStacks().entrySet()) {
+            writer.write(entry.getKey());
+            writer.write(' ');
+            writer.write(Long.toString(entry.getValue()));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    public void reset() {
+        stacks.clear();
+        sampleCount.reset();
+    }
+
+    /**
+     * Stops profiling. The recorded stacks remain available.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+        synchronized (GuestProfiler.class) {
+            if (active == this) {
+                active = null;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GuestProfiler{" +
+                "interval=" + interval +
+                ", samples=" + sampleCount.sum() +
+                ", stacks=" + stacks.size() +
+                '}';
+    }
+}
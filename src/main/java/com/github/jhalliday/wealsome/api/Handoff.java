@@ -0,0 +1,63 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Passes work from submitting threads to a small number of worker threads.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+interface Handoff<T> {
+
+    void put(T item);
+
+    /**
+     * @return the next item, waiting for one if need be.
+     */
+    T take() throws InterruptedException;
+
+    /**
+     * @return the next item, or null if there is none.
+     */
+    T poll();
+
+    /**
+     * @return a handoff over a LinkedBlockingQueue, where a waiting worker blocks on a lock.
+     */
+    static <T> Handoff<T> blocking() {
+        return new Blocking<>();
+    }
+
+    final class Blocking<T> implements Handoff<T> {
+
+        private final BlockingQueue<T> queue = new LinkedBlockingQueue<>();
+
+        @Override
+        public void put(T item) {
+            queue.add(item);
+        }
+
+        @Override
+        public T take() throws InterruptedException {
+            return queue.take();
+        }
+
+        @Override
+        public T poll() {
+            return queue.poll();
+        }
+    }
+}
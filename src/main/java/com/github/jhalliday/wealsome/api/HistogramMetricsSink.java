@@ -0,0 +1,144 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The default {@link MetricsSink}, which aggregates the measurements in memory for the application to read or export.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class HistogramMetricsSink implements MetricsSink {
+
+    /**
+     * The calls to one export.
+     */
+    public static final class CallMetrics {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder traps = new LongAdder();
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getCallCount() {
+            return latency.getCount();
+        }
+
+        public long getTrapCount() {
+            return traps.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "CallMetrics{" +
+                    "latency=" + latency +
+                    ", traps=" + traps.sum() +
+                    '}';
+        }
+    }
+
+    private final Map<String, CallMetrics> calls = new ConcurrentHashMap<>();
+    private final LatencyHistogram instantiations = new LatencyHistogram();
+    private final LatencyHistogram compilations = new LatencyHistogram();
+    private final LatencyHistogram deserializations = new LatencyHistogram();
+    private final CallMetrics hostCallbacks = new CallMetrics();
+    private final LongAdder bytesToGuest = new LongAdder();
+    private final LongAdder bytesFromGuest = new LongAdder();
+
+    @Override
+    public void call(String exportName, long nanos, boolean trapped) {
+        CallMetrics callMetrics = calls.computeIfAbsent(exportName, name -> new CallMetrics());
+        callMetrics.latency.record(nanos);
+        if (trapped) {
+            callMetrics.traps.increment();
+        }
+    }
+
+    @Override
+    public void instantiate(long nanos) {
+        instantiations.record(nanos);
+    }
+
+    @Override
+    public void compile(long nanos) {
+        compilations.record(nanos);
+    }
+
+    @Override
+    public void deserialize(long nanos) {
+        deserializations.record(nanos);
+    }
+
+    @Override
+    public void hostCallback(long nanos, boolean trapped) {
+        hostCallbacks.latency.record(nanos);
+        if (trapped) {
+            hostCallbacks.traps.increment();
+        }
+    }
+
+    @Override
+    public void memoryBytes(long bytes, boolean toGuest) {
+        (toGuest ? bytesToGuest : bytesFromGuest).add(bytes);
+    }
+
+    /**
+     * @return the metrics for each export that has been called, by name.
+     */
+    public Map<String, CallMetrics> getCalls() {
+        return Collections.unmodifiableMap(calls);
+    }
+
+    public LatencyHistogram getInstantiations() {
+        return instantiations;
+    }
+
+    public LatencyHistogram getCompilations() {
+        return compilations;
+    }
+
+    public LatencyHistogram getDeserializations() {
+        return deserializations;
+    }
+
+    public CallMetrics getHostCallbacks() {
+        return hostCallbacks;
+    }
+
+    public long getBytesToGuest() {
+        return bytesToGuest.sum();
+    }
+
+    public long getBytesFromGuest() {
+        return bytesFromGuest.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramMetricsSink{" +
+                "calls=" + calls +
+                ", instantiations=" + instantiations +
+                ", compilations=" + compilations +
+                ", deserializations=" + deserializations +
+                ", hostCallbacks=" + hostCallbacks +
+                ", bytesToGuest=" + bytesToGuest.sum() +
+                ", bytesFromGuest=" + bytesFromGuest.sum() +
+                '}';
+    }
+}
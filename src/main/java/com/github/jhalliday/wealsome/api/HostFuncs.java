@@ -0,0 +1,316 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import com.github.jhalliday.wealsome.generated.wasm_func_callback_with_env_t;
+import com.github.jhalliday.wealsome.generated.wasm_val_vec_t;
+import jdk.incubator.foreign.*;
+import org.jboss.logging.Logger;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.*;
+
+/**
+ * Binds Java functional interfaces as host functions.
+ * <p>
+ * There is one upcall stub per supported shape, created once and shared by every function of that shape.
+ * The env pointer of each wasm_func_t is not a real pointer, but an index into a registry of Java targets,
+ * which is released by the func's finalizer. The stubs read and write the wasm_val_t slots in place,
+ * so a call that returns normally allocates nothing. An exception thrown by the target becomes a trap.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+final class HostFuncs {
+
+    private static final Logger logger = Logger.getLogger(HostFuncs.class);
+
+    private static final MemorySegment EVERYTHING = MemorySegment.globalNativeSegment();
+    private static final long DATA_OFFSET = wasm_val_vec_t.$LAYOUT().byteOffset(MemoryLayout.PathElement.groupElement("data"));
+
+    private static final MemoryAddress INT_UNARY = stub(HostFuncs::intUnary);
+    private static final MemoryAddress INT_BINARY = stub(HostFuncs::intBinary);
+    private static final MemoryAddress LONG_UNARY = stub(HostFuncs::longUnary);
+    private static final MemoryAddress LONG_BINARY = stub(HostFuncs::longBinary);
+    private static final MemoryAddress DOUBLE_UNARY = stub(HostFuncs::doubleUnary);
+    private static final MemoryAddress DOUBLE_BINARY = stub(HostFuncs::doubleBinary);
+    private static final MemoryAddress FINALIZER = finalizerStub();
+
+    private static final Object lock = new Object();
+    private static volatile Binding[] bindings = new Binding[16];
+    private static int[] free = new int[0];
+    private static int freeCount;
+    private static int used;
+
+    private record Binding(MemoryAddress store, Object target) {
+    }
+
+    private HostFuncs() {
+    }
+
+    static Func newIntUnaryFunc(Store store, IntUnaryOperator target) {
+        return newFunc(store, target, INT_UNARY, ValType.I32, ValType.I32);
+    }
+
+    static Func newIntBinaryFunc(Store store, IntBinaryOperator target) {
+        return newFunc(store, target, INT_BINARY, ValType.I32, ValType.I32, ValType.I32);
+    }
+
+    static Func newLongUnaryFunc(Store store, LongUnaryOperator target) {
+        return newFunc(store, target, LONG_UNARY, ValType.I64, ValType.I64);
+    }
+
+    static Func newLongBinaryFunc(Store store, LongBinaryOperator target) {
+        return newFunc(store, target, LONG_BINARY, ValType.I64, ValType.I64, ValType.I64);
+    }
+
+    static Func newDoubleUnaryFunc(Store store, DoubleUnaryOperator target) {
+        return newFunc(store, target, DOUBLE_UNARY, ValType.F64, ValType.F64);
+    }
+
+    static Func newDoubleBinaryFunc(Store store, DoubleBinaryOperator target) {
+        return newFunc(store, target, DOUBLE_BINARY, ValType.F64, ValType.F64, ValType.F64);
+    }
+
+    private static Func newFunc(Store store, Object target, MemoryAddress stub, ValType... types) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}, {1}", store, target);
+        }
+
+        int index = register(new Binding(store.address(), target));
+        ValType resultType = types[types.length - 1];
+        MemoryAddress funcAddress;
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope();
+             FuncType funcType = types.length == 2
+                     ? FuncType.new_1_1(resourceScope, types[0], resultType)
+                     : FuncType.new_2_1(resourceScope, types[0], types[1], resultType)) {
+            funcAddress = WasmAPI.func_new_with_env(store, funcType, stub, MemoryAddress.ofLong(index), FINALIZER);
+        }
+        Func func = new Func(funcAddress);
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", index);
+        }
+        return func;
+    }
+
+    private static int register(Binding binding) {
+        synchronized (lock) {
+            int index;
+            if (freeCount > 0) {
+                index = free[--freeCount];
+            } else {
+                index = used++;
+            }
+            Binding[] current = bindings;
+            if (index == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[index] = binding;
+            // the volatile write publishes the new entry to the calling threads.
+            bindings = current;
+            return index;
+        }
+    }
+
+    // void (*finalizer)(void*), called by wasmtime when the func is no longer referenced.
+    private static void release(MemoryAddress env) {
+        int index = (int) env.toRawLongValue();
+        synchronized (lock) {
+            bindings[index] = null;
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, Math.max(16, freeCount * 2));
+            }
+            free[freeCount++] = index;
+        }
+    }
+
+    ///////////////////////////////
+
+    private static MemoryAddress intUnary(MemoryAddress env, MemoryAddress params, MemoryAddress results) {
+        Binding binding = binding(env);
+        try {
+            int result = ((IntUnaryOperator) binding.target).applyAsInt(getInt(params, 0));
+            setInt(results, CallSlots.I32, result);
+            return MemoryAddress.NULL;
+        } catch (Throwable t) {
+            return trap(binding, t);
+        }
+    }
+
+    private static MemoryAddress intBinary(MemoryAddress env, MemoryAddress params, MemoryAddress results) {
+        Binding binding = binding(env);
+        try {
+            int result = ((IntBinaryOperator) binding.target).applyAsInt(getInt(params, 0), getInt(params, 1));
+            setInt(results, CallSlots.I32, result);
+            return MemoryAddress.NULL;
+        } catch (Throwable t) {
+            return trap(binding, t);
+        }
+    }
+
+    private static MemoryAddress longUnary(MemoryAddress env, MemoryAddress params, MemoryAddress results) {
+        Binding binding = binding(env);
+        try {
+            long result = ((LongUnaryOperator) binding.target).applyAsLong(getLong(params, 0));
+            setLong(results, result);
+            return MemoryAddress.NULL;
+        } catch (Throwable t) {
+            return trap(binding, t);
+        }
+    }
+
+    private static MemoryAddress longBinary(MemoryAddress env, MemoryAddress params, MemoryAddress results) {
+        Binding binding = binding(env);
+        try {
+            long result = ((LongBinaryOperator) binding.target).applyAsLong(getLong(params, 0), getLong(params, 1));
+            setLong(results, result);
+            return MemoryAddress.NULL;
+        } catch (Throwable t) {
+            return trap(binding, t);
+        }
+    }
+
+    private static MemoryAddress doubleUnary(MemoryAddress env, MemoryAddress params, MemoryAddress results) {
+        Binding binding = binding(env);
+        try {
+            double result = ((DoubleUnaryOperator) binding.target).applyAsDouble(getDouble(params, 0));
+            setDouble(results, result);
+            return MemoryAddress.NULL;
+        } catch (Throwable t) {
+            return trap(binding, t);
+        }
+    }
+
+    private static MemoryAddress doubleBinary(MemoryAddress env, MemoryAddress params, MemoryAddress results) {
+        Binding binding = binding(env);
+        try {
+            double result = ((DoubleBinaryOperator) binding.target).applyAsDouble(getDouble(params, 0), getDouble(params, 1));
+            setDouble(results, result);
+            return MemoryAddress.NULL;
+        } catch (Throwable t) {
+            return trap(binding, t);
+        }
+    }
+
+    ///////////////////////////////
+
+    private static Binding binding(MemoryAddress env) {
+        return bindings[(int) env.toRawLongValue()];
+    }
+
+    // offset of the value of the index'th wasm_val_t in the wasm_val_vec_t* vec.
+    private static long valueOffset(MemoryAddress vec, int index) {
+        long data = MemoryAccess.getLongAtOffset(EVERYTHING, vec.toRawLongValue() + DATA_OFFSET);
+        return data + index * CallSlots.VAL_SIZE + CallSlots.OF_OFFSET;
+    }
+
+    private static int getInt(MemoryAddress params, int index) {
+        return MemoryAccess.getIntAtOffset(EVERYTHING, valueOffset(params, index));
+    }
+
+    private static long getLong(MemoryAddress params, int index) {
+        return MemoryAccess.getLongAtOffset(EVERYTHING, valueOffset(params, index));
+    }
+
+    private static double getDouble(MemoryAddress params, int index) {
+        return MemoryAccess.getDoubleAtOffset(EVERYTHING, valueOffset(params, index));
+    }
+
+    private static void setInt(MemoryAddress results, byte kind, int value) {
+        long offset = valueOffset(results, 0);
+        MemoryAccess.setByteAtOffset(EVERYTHING, offset - CallSlots.OF_OFFSET, kind);
+        MemoryAccess.setIntAtOffset(EVERYTHING, offset, value);
+    }
+
+    private static void setLong(MemoryAddress results, long value) {
+        long offset = valueOffset(results, 0);
+        MemoryAccess.setByteAtOffset(EVERYTHING, offset - CallSlots.OF_OFFSET, CallSlots.I64);
+        MemoryAccess.setLongAtOffset(EVERYTHING, offset, value);
+    }
+
+    private static void setDouble(MemoryAddress results, double value) {
+        long offset = valueOffset(results, 0);
+        MemoryAccess.setByteAtOffset(EVERYTHING, offset - CallSlots.OF_OFFSET, CallSlots.F64);
+        MemoryAccess.setDoubleAtOffset(EVERYTHING, offset, value);
+    }
+
+    /**
+     * @return an owned wasm_trap_t* carrying the exception's description, for the caller of the host function.
+     */
+    private static MemoryAddress trap(Binding binding, Throwable throwable) {
+        if (logger.isDebugEnabled()) {
+            logger.debugv(throwable, "host function {0} threw", binding.target);
+        }
+
+        WasmEvents.TrapEvent trapEvent = new WasmEvents.TrapEvent();
+        if (trapEvent.shouldCommit()) {
+            trapEvent.message = String.valueOf(throwable);
+            trapEvent.host = true;
+            trapEvent.commit();
+        }
+
+        // the message is null terminated and the size includes it.
+        byte[] text = (throwable + "\0").getBytes(StandardCharsets.UTF_8);
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope();
+             ByteVec message = new ByteVec(resourceScope, text)) {
+            return WasmAPI.trap_new(binding.store, message);
+        }
+    }
+
+    private static MemoryAddress stub(wasm_func_callback_with_env_t callback) {
+        return wasm_func_callback_with_env_t.allocate(instrumented(callback), ResourceScope.globalScope());
+    }
+
+    // the recorder may be started at any time, so unlike the metrics the check is made per call.
+    private static wasm_func_callback_with_env_t instrumented(wasm_func_callback_with_env_t callback) {
+        return (env, params, results) -> {
+            GuestProfiler guestProfiler = GuestProfiler.active();
+            if (guestProfiler != null) {
+                guestProfiler.onHostCallback(binding(env).store);
+            }
+            WasmEvents.HostCallbackEvent hostCallbackEvent = new WasmEvents.HostCallbackEvent();
+            if (!WasmMetrics.ENABLED && !hostCallbackEvent.isEnabled()) {
+                return callback.apply(env, params, results);
+            }
+            long start = System.nanoTime();
+            hostCallbackEvent.begin();
+            MemoryAddress trapAddress = callback.apply(env, params, results);
+            long nanos = System.nanoTime() - start;
+            boolean trapped = !MemoryAddress.NULL.equals(trapAddress);
+            hostCallbackEvent.end();
+            if (hostCallbackEvent.shouldCommit()) {
+                hostCallbackEvent.target = String.valueOf(binding(env).target);
+                hostCallbackEvent.trapped = trapped;
+                hostCallbackEvent.commit();
+            }
+            if (WasmMetrics.ENABLED) {
+                WasmMetrics.getSink().hostCallback(nanos, trapped);
+            }
+            return trapAddress;
+        };
+    }
+
+    private static MemoryAddress finalizerStub() {
+        try {
+            return CLinker.getInstance().upcallStub(
+                    MethodHandles.lookup().findStatic(HostFuncs.class, "release", MethodType.methodType(void.class, MemoryAddress.class)),
+                    FunctionDescriptor.ofVoid(CLinker.C_POINTER),
+                    ResourceScope.globalScope()).address();
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
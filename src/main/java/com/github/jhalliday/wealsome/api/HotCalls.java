@@ -0,0 +1,58 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.Addressable;
+import jdk.incubator.foreign.MemoryAddress;
+import org.jboss.logging.Logger;
+
+/**
+ * The native functions that are crossed on every call or memory/global access,
+ * bound separately from the rest of {@link WasmAPI} so they avoid its per-call trace guard.
+ * <p>
+ * The implementation is chosen once, at startup, by the system property {@value #PROPERTY}:
+ * <ul>
+ *     <li>{@code direct} (the default) - cached downcall handles, see {@link DirectHotCalls}</li>
+ *     <li>{@code traced} - as direct, but logging each call at trace level, see {@link TracingHotCalls}</li>
+ *     <li>{@code generated} - the jextract generated bindings, as used by the rest of WasmAPI</li>
+ * </ul>
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+interface HotCalls {
+
+    String PROPERTY = "wealsome.hotcalls";
+
+    HotCalls INSTANCE = select(System.getProperty(PROPERTY, "direct"));
+
+    MemoryAddress func_call(Addressable x0, Addressable args, Addressable results);
+
+    void global_get(Addressable x0, Addressable out);
+
+    void global_set(Addressable x0, Addressable x1);
+
+    MemoryAddress memory_data(Addressable x0);
+
+    long memory_data_size(Addressable x0);
+
+    static HotCalls select(String name) {
+        HotCalls hotCalls = switch (name) {
+            case "direct" -> new DirectHotCalls();
+            case "traced" -> new TracingHotCalls(new DirectHotCalls());
+            case "generated" -> new GeneratedHotCalls();
+            default -> throw new IllegalArgumentException("unknown " + PROPERTY + " value: " + name);
+        };
+        Logger.getLogger(HotCalls.class).debugv("using {0}", hotCalls);
+        return hotCalls;
+    }
+}
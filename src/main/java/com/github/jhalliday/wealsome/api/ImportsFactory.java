@@ -0,0 +1,32 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.ResourceScope;
+
+/**
+ * Creates the imports for one instance, in the Store that instance will live in.
+ * Used by {@link WasmExecutor} for each worker's instance and by {@link InstancePool} for each pooled instance.
+ * The caller owns the returned vec and closes it, with the externs in it, when the instance is discarded.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+@FunctionalInterface
+public interface ImportsFactory {
+
+    /**
+     * @param store         the Store the instance will be created in.
+     * @param resourceScope a scope which outlives the instance, for any native memory the imports need.
+     */
+    ExternVec create(Store store, ResourceScope resourceScope);
+}
@@ -14,8 +14,12 @@ package com.github.jhalliday.wealsome.api;
 
 import jdk.incubator.foreign.Addressable;
 import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.ResourceScope;
 import org.jboss.logging.Logger;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * An instantiated WebAssembly module.
  *
@@ -30,11 +34,25 @@ public class Instance implements Addressable, AutoCloseable {
     private final Module module;
     private final MemoryAddress address;
 
+    // fetched on first lookup by name, then retained until close.
+    private ResourceScope exportsScope;
+    private ExternVec exportsVec;
+    private WasmFunc[] funcs;
+    private Memory[] memories;
+    private Global[] globals;
+
     public Instance(Store store, Module module, ExternVec imports) {
-        this(store, module, imports, null);
+        this(store, module, imports, MemoryAddress.NULL);
     }
 
     public Instance(Store store, Module module, ExternVec imports, Trap trap) {
+        this(store, module, imports, trap == null ? MemoryAddress.NULL : trap.address());
+    }
+
+    /**
+     * @param trapAddress a wasm_trap_t** to receive any trap from the start function, or NULL.
+     */
+    private Instance(Store store, Module module, ExternVec imports, MemoryAddress trapAddress) {
         if (logger.isTraceEnabled()) {
             logger.tracev("entry");
         }
@@ -42,18 +60,131 @@ public class Instance implements Addressable, AutoCloseable {
         this.store = store;
         this.module = module;
 
-        MemoryAddress trapAddress = trap == null ? MemoryAddress.NULL : trap.address();
+        WasmEvents.InstantiateEvent instantiateEvent = new WasmEvents.InstantiateEvent();
+        instantiateEvent.begin();
+        long start = WasmMetrics.ENABLED ? System.nanoTime() : 0;
         address = WasmAPI.instance_new(store.address(), module.address(), imports, trapAddress);
+        instantiateEvent.end();
+        if (instantiateEvent.shouldCommit()) {
+            instantiateEvent.moduleHash = module.getHash();
+            instantiateEvent.succeeded = !MemoryAddress.NULL.equals(address);
+            instantiateEvent.commit();
+        }
+        if (WasmMetrics.ENABLED) {
+            WasmMetrics.getSink().instantiate(System.nanoTime() - start);
+        }
 
         if (logger.isTraceEnabled()) {
             logger.tracev("exit {0}", this);
         }
     }
 
+    /**
+     * Instantiates the module, using the calling thread's preallocated trap slot rather than a new {@link Trap}.
+     * If the start function traps, the instance's address is NULL and the trap is held,
+     * undecoded, in {@link TrapResult#current()}.
+     */
+    public static Instance instantiate(Store store, Module module, ExternVec imports) {
+        TrapResult trapResult = TrapResult.current();
+        Instance instance = new Instance(store, module, imports, trapResult.trapOut());
+        trapResult.setFromTrapOut();
+        return instance;
+    }
+
     public void exports(ExternVec exports) {
         WasmAPI.instance_exports(address(), exports);
     }
 
+    public Module getModule() {
+        return module;
+    }
+
+    /**
+     * Finds an exported function by name, via the module's {@link ExportIndex}.
+     * The handle is cached, so repeated lookups of the same name do no native calls.
+     *
+     * @return the function, borrowed from this instance and valid until it is closed.
+     * @throws IllegalArgumentException if there is no exported function of that name.
+     */
+    public WasmFunc func(String name) {
+        int position = position(name, ExternKind.WASM_EXTERN_FUNC);
+        WasmFunc func = funcs[position];
+        if (func == null) {
+            func = new WasmFunc(exportsVec.asFunc(position).address(), name, module.getHash());
+            funcs[position] = func;
+        }
+        return func;
+    }
+
+    /**
+     * Finds an exported memory by name, via the module's {@link ExportIndex}.
+     * The handle is cached, so repeated lookups of the same name reuse its view of the memory.
+     *
+     * @return the memory, borrowed from this instance and valid until it is closed.
+     * @throws IllegalArgumentException if there is no exported memory of that name.
+     */
+    public Memory memory(String name) {
+        int position = position(name, ExternKind.WASM_EXTERN_MEMORY);
+        Memory memory = memories[position];
+        if (memory == null) {
+            memory = exportsVec.asMemory(position);
+            memories[position] = memory;
+        }
+        return memory;
+    }
+
+    /**
+     * Finds an exported global by name, via the module's {@link ExportIndex}.
+     * The handle is cached, so repeated lookups of the same name do no native calls.
+     *
+     * @return the global, borrowed from this instance and valid until it is closed.
+     * @throws IllegalArgumentException if there is no exported global of that name.
+     */
+    public Global global(String name) {
+        int position = position(name, ExternKind.WASM_EXTERN_GLOBAL);
+        Global global = globals[position];
+        if (global == null) {
+            global = exportsVec.asGlobal(position);
+            globals[position] = global;
+        }
+        return global;
+    }
+
+    /**
+     * Reads all the exported numeric globals in one pass.
+     *
+     * @return the values by export name, in export order.
+     */
+    public Map<String, Number> globals() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        CallSlots callSlots = CallSlots.current();
+        for (ExportIndex.Entry entry : module.getExportIndex().entries()) {
+            if (entry.kind() == ExternKind.WASM_EXTERN_GLOBAL) {
+                Global global = global(entry.name());
+                if (global.getContent() != null && global.getContent().isNumeric()) {
+                    values.put(entry.name(), callSlots.getGlobal(global.address(), global.getContent()));
+                }
+            }
+        }
+        return values;
+    }
+
+    private int position(String name, ExternKind externKind) {
+        ExportIndex.Entry entry = module.getExportIndex().get(name);
+        if (entry == null || entry.kind() != externKind) {
+            throw new IllegalArgumentException("no " + externKind + " export named " + name);
+        }
+        if (exportsVec == null) {
+            exportsScope = ResourceScope.newSharedScope();
+            exportsVec = new ExternVec(exportsScope);
+            exports(exportsVec);
+            funcs = new WasmFunc[(int) exportsVec.size()];
+            memories = new Memory[(int) exportsVec.size()];
+            globals = new Global[(int) exportsVec.size()];
+        }
+        return entry.position();
+    }
+
     @Override
     public MemoryAddress address() {
         return address;
@@ -61,6 +192,10 @@ public class Instance implements Addressable, AutoCloseable {
 
     @Override
     public void close() {
+        if (exportsVec != null) {
+            exportsVec.close();
+            exportsScope.close();
+        }
         WasmAPI.instance_delete(address);
     }
 
@@ -0,0 +1,285 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.ResourceScope;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A pool of pre-created instances of one module, to take instantiation off the per-request path.
+ * <p>
+ * Each instance is created in a Store of its own. In wasmtime 0.30 deleting an instance does not release its state,
+ * which stays in the Store until the Store itself is deleted, so discarding instances from one long lived Store
+ * would grow native memory without bound. Instead, closing a pooled instance closes its Store too.
+ * Borrowed instances are given back with {@link #release(Instance)}, whereupon the {@link ResetStrategy} applies:
+ * <ul>
+ *     <li>{@link ResetStrategy#DISCARD} - the used instance and its Store are closed and a fresh one is created
+ *     by a refill task, so that no state leaks from one use to the next.</li>
+ *     <li>{@link ResetStrategy#REUSE} - the instance goes straight back in the pool.
+ *     Only suitable for modules declared stateless, i.e. that keep nothing in memory, globals or tables between calls.</li>
+ * </ul>
+ * Refill tasks run on the Executor given at construction, by default a shared background thread,
+ * so that the caller of release does not pay for instantiation.
+ * Since no two instances share a Store, the pool may be used from any thread,
+ * though each borrowed instance must be used by only one thread at a time.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class InstancePool implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(InstancePool.class);
+
+    private static final ExecutorService defaultRefillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wealsome-instance-pool-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public enum ResetStrategy {
+        DISCARD,
+        REUSE
+    }
+
+    /**
+     * A snapshot of the pool's counters.
+     *
+     * @param hits           borrows satisfied from the pool.
+     * @param misses         borrows that had to create an instance on the spot.
+     * @param refills        instances created by refill tasks.
+     * @param refillNanos    total time spent creating instances in refill tasks.
+     * @param maxRefillNanos the longest time taken to create an instance in a refill task.
+     */
+    public record Statistics(long hits, long misses, long refills, long refillNanos, long maxRefillNanos) {
+    }
+
+    // an instance together with everything it depends on, all closed with it.
+    private record Pooled(Store store, Module module, ResourceScope resourceScope, ExternVec imports, Instance instance) {
+        void close() {
+            instance.close();
+            imports.close();
+            resourceScope.close();
+            module.close();
+            store.close();
+        }
+    }
+
+    private final Engine engine;
+    private final SharedModule sharedModule;
+    private final ImportsFactory importsFactory;
+    private final int size;
+    private final ResetStrategy resetStrategy;
+    private final Executor refillExecutor;
+
+    private final Deque<Pooled> idle = new ArrayDeque<>();
+    private final Map<Instance, Pooled> borrowed = new IdentityHashMap<>();
+    private boolean refillScheduled;
+    private boolean closed;
+
+    private long hits;
+    private long misses;
+    private long refills;
+    private long refillNanos;
+    private long maxRefillNanos;
+
+    public InstancePool(Engine engine, SharedModule sharedModule, ImportsFactory importsFactory, int size, ResetStrategy resetStrategy) {
+        this(engine, sharedModule, importsFactory, size, resetStrategy, defaultRefillExecutor);
+    }
+
+    /**
+     * Creates the pool and fills it.
+     *
+     * @param sharedModule   the module, which must remain open for the life of the pool.
+     * @param importsFactory creates the imports for each instance, in that instance's Store.
+     *                       The pool owns the returned vec and closes it, with the externs in it, with the instance.
+     * @param size           the number of idle instances the pool holds.
+     * @param refillExecutor runs refill tasks.
+     */
+    public InstancePool(Engine engine, SharedModule sharedModule, ImportsFactory importsFactory,
+                        int size, ResetStrategy resetStrategy, Executor refillExecutor) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}, {1}, {2}, {3}", engine, sharedModule, size, resetStrategy);
+        }
+
+        this.engine = engine;
+        this.sharedModule = sharedModule;
+        this.importsFactory = importsFactory;
+        this.size = size;
+        this.resetStrategy = resetStrategy;
+        this.refillExecutor = refillExecutor;
+
+        for (int i = 0; i < size; i++) {
+            idle.push(newPooled());
+        }
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", this);
+        }
+    }
+
+    /**
+     * @return an instance for exclusive use until it is released. Created on the spot if the pool is empty.
+     */
+    public Instance borrow() {
+        Pooled pooled;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("pool is closed");
+            }
+            pooled = idle.poll();
+            if (pooled != null) {
+                hits++;
+                borrowed.put(pooled.instance(), pooled);
+                return pooled.instance();
+            }
+            misses++;
+        }
+        pooled = newPooled();
+        synchronized (this) {
+            borrowed.put(pooled.instance(), pooled);
+        }
+        return pooled.instance();
+    }
+
+    /**
+     * Gives back an instance obtained from {@link #borrow()}, which the caller must not use again.
+     *
+     * @throws IllegalArgumentException if the instance was not borrowed from this pool.
+     */
+    public void release(Instance instance) {
+        Pooled pooled;
+        boolean scheduleRefill;
+        synchronized (this) {
+            pooled = borrowed.remove(instance);
+            if (pooled == null) {
+                throw new IllegalArgumentException("instance was not borrowed from this pool");
+            }
+            if (!closed && resetStrategy == ResetStrategy.REUSE && idle.size() < size) {
+                idle.push(pooled);
+                return;
+            }
+            scheduleRefill = !closed && !refillScheduled && idle.size() < size;
+            if (scheduleRefill) {
+                refillScheduled = true;
+            }
+        }
+        pooled.close();
+        if (scheduleRefill) {
+            refillExecutor.execute(this::refill);
+        }
+    }
+
+    /**
+     * Tops the pool up to its size. Normally run by refill tasks, but may also be called directly.
+     */
+    public void refill() {
+        while (true) {
+            synchronized (this) {
+                if (closed || idle.size() >= size) {
+                    refillScheduled = false;
+                    return;
+                }
+            }
+
+            long start = System.nanoTime();
+            Pooled pooled;
+            try {
+                pooled = newPooled();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    refillScheduled = false;
+                }
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            synchronized (this) {
+                refills++;
+                refillNanos += elapsed;
+                maxRefillNanos = Math.max(maxRefillNanos, elapsed);
+                if (!closed) {
+                    idle.push(pooled);
+                    continue;
+                }
+            }
+            pooled.close();
+        }
+    }
+
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hits, misses, refills, refillNanos, maxRefillNanos);
+    }
+
+    private Pooled newPooled() {
+        Store store = engine.newStore();
+        Module module = null;
+        ResourceScope resourceScope = null;
+        ExternVec imports = null;
+        try {
+            module = store.obtainModule(sharedModule);
+            resourceScope = ResourceScope.newSharedScope();
+            imports = importsFactory.create(store, resourceScope);
+            Instance instance = new Instance(store, module, imports);
+            if (MemoryAddress.NULL.equals(instance.address())) {
+                throw new IllegalStateException("instantiation failed");
+            }
+            return new Pooled(store, module, resourceScope, imports, instance);
+        } catch (RuntimeException e) {
+            if (imports != null) {
+                imports.close();
+            }
+            if (resourceScope != null) {
+                resourceScope.close();
+            }
+            if (module != null) {
+                module.close();
+            }
+            store.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the idle instances. Borrowed instances are closed when they are released.
+     */
+    @Override
+    public void close() {
+        Deque<Pooled> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            idle.clear();
+        }
+        for (Pooled pooled : toClose) {
+            pooled.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InstancePool{" +
+                "engine=" + engine +
+                ", sharedModule=" + sharedModule +
+                ", size=" + size +
+                ", resetStrategy=" + resetStrategy +
+                '}';
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.ResourceScope;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * A module which is validated when registered, but not compiled until first used.
+ * <p>
+ * Validation is much cheaper than compilation, so bad binaries are still reported up front,
+ * whilst modules that are never used never pay the compilation cost.
+ * The compiled module is held in shared form, so may be obtained into any Store, from any thread.
+ * A {@link ModuleWarmer} may be used to compile modules in the background ahead of first use.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class LazyModule implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(LazyModule.class);
+
+    private final Engine engine;
+    private final Path path;
+    private final int priority;
+
+    private volatile SharedModule sharedModule;
+    private boolean closed;
+
+    public LazyModule(Engine engine, Path path) {
+        this(engine, path, 0);
+    }
+
+    /**
+     * @param priority the order in which a {@link ModuleWarmer} compiles modules, highest first.
+     * @throws IllegalArgumentException if the file is not a valid wasm module.
+     */
+    public LazyModule(Engine engine, Path path, int priority) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}, {1}, {2}", engine, path, priority);
+        }
+
+        this.engine = engine;
+        this.path = path;
+        this.priority = priority;
+
+        try (Store store = engine.newStore();
+             ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ByteVec binary = ByteVec.mapFile(resourceScope, path);
+            if (WasmAPI.module_validate(store, binary) == 0) {
+                throw new IllegalArgumentException("invalid module " + path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", this);
+        }
+    }
+
+    /**
+     * @return a module for use in the given store, compiling it first if that has not yet been done.
+     * @throws IllegalStateException if this has been closed.
+     */
+    public synchronized Module obtain(Store store) {
+        // obtained under the lock, so that close() cannot delete the shared module part way through.
+        return store.obtainModule(compile());
+    }
+
+    /**
+     * Compiles the module, unless that has already been done.
+     * Concurrent callers wait for a single compilation rather than duplicating it.
+     */
+    public synchronized SharedModule compile() {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+        if (sharedModule != null) {
+            return sharedModule;
+        }
+
+        long start = System.nanoTime();
+        try (Store store = engine.newStore()) {
+            Module module = Module.fromFile(store, path);
+            if (MemoryAddress.NULL.equals(module.address())) {
+                throw new IllegalStateException("compilation failed for " + path);
+            }
+            sharedModule = new SharedModule(module);
+            module.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.debugv("compiled {0} in {1}ms", path, (System.nanoTime() - start) / 1_000_000);
+
+        return sharedModule;
+    }
+
+    public boolean isCompiled() {
+        return sharedModule != null;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (sharedModule != null) {
+            sharedModule.close();
+            sharedModule = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LazyModule{" +
+                "path=" + path +
+                ", priority=" + priority +
+                ", compiled=" + isCompiled() +
+                '}';
+    }
+}
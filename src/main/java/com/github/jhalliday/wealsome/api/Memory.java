@@ -0,0 +1,142 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import org.jboss.logging.Logger;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A WebAssembly linear memory, e.g. as exported from an Instance.
+ * <p>
+ * {@link #segment()} gives direct access to the guest memory, without copying.
+ * The memory may move when it grows, either via {@link #grow(int)} or from guest code,
+ * so the view is rechecked against the current size on each access and should not be held across calls into the guest.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ * @see <a href="https://docs.rs/wasmtime/0.30.0/wasmtime/struct.Memory.html">Memory</a>
+ */
+public class Memory extends Extern {
+
+    private static final Logger logger = Logger.getLogger(Memory.class);
+
+    public static final long PAGE_SIZE = 65536;
+
+    private final ResourceScope resourceScope;
+    private MemorySegment segment;
+
+    /**
+     * @param address a wasm_memory_t*, which this does not take ownership of.
+     */
+    public Memory(ResourceScope resourceScope, MemoryAddress address) {
+        super(resourceScope, address);
+        this.resourceScope = resourceScope;
+    }
+
+    @Override
+    public ExternKind getKind() {
+        return ExternKind.WASM_EXTERN_MEMORY;
+    }
+
+    /**
+     * @return the size in pages.
+     */
+    public int pages() {
+        return WasmAPI.memory_size(address);
+    }
+
+    public long byteSize() {
+        return WasmAPI.memory_data_size(address);
+    }
+
+    /**
+     * @return true if the memory grew, false if it would exceed the maximum size.
+     */
+    public boolean grow(int deltaPages) {
+        segment = null;
+        WasmEvents.MemoryGrowEvent memoryGrowEvent = new WasmEvents.MemoryGrowEvent();
+        memoryGrowEvent.begin();
+        boolean succeeded = WasmAPI.memory_grow(address, deltaPages) != 0;
+        memoryGrowEvent.end();
+        if (memoryGrowEvent.shouldCommit()) {
+            memoryGrowEvent.deltaPages = deltaPages;
+            memoryGrowEvent.pages = pages();
+            memoryGrowEvent.succeeded = succeeded;
+            memoryGrowEvent.commit();
+        }
+        return succeeded;
+    }
+
+    /**
+     * @return a view of the whole of the guest memory, valid until it next grows.
+     */
+    public MemorySegment segment() {
+        long byteSize = WasmAPI.memory_data_size(address);
+        MemorySegment current = segment;
+        if (current == null || current.byteSize() != byteSize) {
+            current = WasmAPI.memory_data(address).asSegment(byteSize, resourceScope);
+            segment = current;
+        }
+        return current;
+    }
+
+    public void copyFrom(long offset, byte[] src) {
+        copyFrom(offset, MemorySegment.ofArray(src));
+    }
+
+    /**
+     * Copies the remaining bytes of the buffer into memory, advancing the buffer's position.
+     */
+    public void copyFrom(long offset, ByteBuffer src) {
+        int length = src.remaining();
+        copyFrom(offset, MemorySegment.ofByteBuffer(src));
+        src.position(src.position() + length);
+    }
+
+    public void copyFrom(long offset, MemorySegment src) {
+        segment().asSlice(offset, src.byteSize()).copyFrom(src);
+        if (WasmMetrics.ENABLED) {
+            WasmMetrics.getSink().memoryBytes(src.byteSize(), true);
+        }
+    }
+
+    public void copyTo(long offset, byte[] dst) {
+        copyTo(offset, MemorySegment.ofArray(dst));
+    }
+
+    /**
+     * Fills the remaining space in the buffer from memory, advancing the buffer's position.
+     */
+    public void copyTo(long offset, ByteBuffer dst) {
+        int length = dst.remaining();
+        copyTo(offset, MemorySegment.ofByteBuffer(dst));
+        dst.position(dst.position() + length);
+    }
+
+    public void copyTo(long offset, MemorySegment dst) {
+        dst.copyFrom(segment().asSlice(offset, dst.byteSize()));
+        if (WasmMetrics.ENABLED) {
+            WasmMetrics.getSink().memoryBytes(dst.byteSize(), false);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Memory{" +
+                "address=" + address +
+                '}';
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+/**
+ * Receives the measurements taken when {@link WasmMetrics} is enabled.
+ * <p>
+ * Methods are called inline on the thread doing the work, including from within host callbacks,
+ * so implementations must be thread safe and should be cheap.
+ * Durations are in nanoseconds.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public interface MetricsSink {
+
+    /**
+     * A call from Java to an exported function, named if it was obtained by name from an {@link Instance}.
+     */
+    default void call(String exportName, long nanos, boolean trapped) {
+    }
+
+    default void instantiate(long nanos) {
+    }
+
+    default void compile(long nanos) {
+    }
+
+    default void deserialize(long nanos) {
+    }
+
+    /**
+     * A call from wasm to a Java host function.
+     */
+    default void hostCallback(long nanos, boolean trapped) {
+    }
+
+    /**
+     * Bytes copied between Java and guest memory by the {@link Memory} copy methods.
+     *
+     * @param toGuest true for copies into guest memory, false for copies out of it.
+     */
+    default void memoryBytes(long bytes, boolean toGuest) {
+    }
+}
@@ -17,8 +17,15 @@ import jdk.incubator.foreign.Addressable;
 import jdk.incubator.foreign.MemoryAddress;
 import jdk.incubator.foreign.MemorySegment;
 import jdk.incubator.foreign.ResourceScope;
+import jdk.jfr.Event;
 import org.jboss.logging.Logger;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
 /**
  * A compiled WebAssembly module.
  *
@@ -31,6 +38,8 @@ public class Module implements Addressable, AutoCloseable {
 
     private final Store store;
     private final MemoryAddress address;
+    private ExportIndex exportIndex;
+    private final String hash;
 
     public Module(Store store, ByteVec binary) {
         this(store, binary, false);
@@ -39,26 +48,106 @@ public class Module implements Addressable, AutoCloseable {
     public Module(Store store, SharedModule sharedModule) {
         this.store = store;
         address = WasmAPI.module_obtain(store, sharedModule);
+        hash = sharedModule.getHash();
     }
 
+    /**
+     * A deserialized module is not identified by a hash in {@link WasmEvents}, as the source binary is not known.
+     * Use {@link ModuleCache} or {@link AotArtifact}, which do know it, to have one.
+     */
     public Module(Store store, ByteVec byteVec, boolean deserialize) {
+        this(store, byteVec, deserialize, deserialize ? () -> null : () -> hash(byteVec.asSegment().asByteBuffer()));
+    }
+
+    /**
+     * @param sourceHash supplies the {@link #hash(ByteBuffer)} of the wasm binary, called only if events need it.
+     */
+    private Module(Store store, ByteVec byteVec, boolean deserialize, Supplier<String> sourceHash) {
         if (logger.isTraceEnabled()) {
             logger.tracev("entry with {0}, {1} {2}", store, byteVec, deserialize);
         }
 
         this.store = store;
 
+        Event event = deserialize ? new WasmEvents.DeserializeEvent() : new WasmEvents.CompileEvent();
+        event.begin();
+        long start = WasmMetrics.ENABLED ? System.nanoTime() : 0;
         if (!deserialize) {
             address = WasmAPI.module_new(store, byteVec);
         } else {
             address = WasmAPI.module_deserialize(store, byteVec);
         }
-
+        event.end();
+        // hashing reads the whole input, e.g. faulting in every page of a mapped file, so only do it if it will be used.
+        boolean hashWanted = event.shouldCommit()
+                || new WasmEvents.InstantiateEvent().isEnabled() || new WasmEvents.CallEvent().isEnabled();
+        hash = hashWanted ? sourceHash.get() : null;
+        if (event.shouldCommit()) {
+            boolean succeeded = !MemoryAddress.NULL.equals(address);
+            if (event instanceof WasmEvents.CompileEvent compileEvent) {
+                compileEvent.moduleHash = hash;
+                compileEvent.bytes = byteVec.size();
+                compileEvent.succeeded = succeeded;
+            } else if (event instanceof WasmEvents.DeserializeEvent deserializeEvent) {
+                deserializeEvent.moduleHash = hash;
+                deserializeEvent.bytes = byteVec.size();
+                deserializeEvent.succeeded = succeeded;
+            }
+            event.commit();
+        }
+        if (WasmMetrics.ENABLED) {
+            long nanos = System.nanoTime() - start;
+            if (deserialize) {
+                WasmMetrics.getSink().deserialize(nanos);
+            } else {
+                WasmMetrics.getSink().compile(nanos);
+            }
+        }
         if (logger.isTraceEnabled()) {
             logger.tracev("exit {0}", this);
         }
     }
 
+    /**
+     * Compiles the wasm binary in the file, which is memory-mapped rather than read onto the heap.
+     * The mapping is released before returning, since the module does not refer to the binary once compiled.
+     *
+     * @return the module, whose address is NULL if compilation failed.
+     */
+    public static Module fromFile(Store store, Path path) throws IOException {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ByteVec binary = ByteVec.mapFile(resourceScope, path);
+            return new Module(store, binary);
+        }
+    }
+
+    /**
+     * Deserializes the compiled module in the file, which is memory-mapped rather than read onto the heap.
+     * The mapping is released before returning, since deserialization copies the code out of it.
+     *
+     * @return the module, whose address is NULL if the file could not be deserialized.
+     */
+    public static Module deserializeFile(Store store, Path path) throws IOException {
+        return deserializeFile(store, path, () -> null);
+    }
+
+    /**
+     * As {@link #deserializeFile(Store, Path)}, for callers that know the hash of the wasm binary it was compiled from.
+     */
+    static Module deserializeFile(Store store, Path path, Supplier<String> sourceHash) throws IOException {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ByteVec serialized = ByteVec.mapFile(resourceScope, path);
+            return deserialize(store, serialized, sourceHash);
+        }
+    }
+
+    /**
+     * Deserializes the module, identifying it in events by the hash of the wasm binary it was compiled from.
+     */
+    static Module deserialize(Store store, ByteVec serialized, Supplier<String> sourceHash) {
+        return new Module(store, serialized, true, sourceHash);
+    }
+
     public ByteVec serialize(ResourceScope resourceScope) {
         MemorySegment byte_vec_t = wasm_byte_vec_t.allocate(resourceScope);
         WasmAPI.module_serialize(address, byte_vec_t.address());
@@ -73,6 +162,39 @@ public class Module implements Addressable, AutoCloseable {
         WasmAPI.module_exports(this, exportTypeVec);
     }
 
+    /**
+     * @return the exports of this module by name, computed on first use, since many modules are only compiled
+     * to be shared or serialized. Null if the module failed to compile, deserialize or be obtained.
+     */
+    public ExportIndex getExportIndex() {
+        // racing threads may each build one, which is harmless as they are equal and immutable.
+        ExportIndex current = exportIndex;
+        if (current == null && !MemoryAddress.NULL.equals(address)) {
+            current = new ExportIndex(this);
+            exportIndex = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return the {@link #hash(ByteBuffer)} of the wasm binary this module was compiled from,
+     * by which it is identified in {@link WasmEvents}. Computed only if wasm events were being recorded
+     * when the module was created, so null otherwise, or if the binary is not known.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @param wasm a wasm binary, from its position to its limit. The position is advanced to the limit.
+     * @return a hash (CRC32C, as hex) of the binary.
+     */
+    public static String hash(ByteBuffer wasm) {
+        CRC32C crc32C = new CRC32C();
+        crc32C.update(wasm);
+        return String.format("%08x", crc32C.getValue());
+    }
+
     @Override
     public MemoryAddress address() {
         return address;
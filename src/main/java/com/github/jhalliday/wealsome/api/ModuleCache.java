@@ -0,0 +1,255 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.ResourceScope;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of compiled (serialized) modules, to avoid recompiling the same wasm on each startup.
+ * <p>
+ * Entries are keyed by a hash of the wasm binary and the engine configuration, since compiled code is only valid
+ * for an engine configured the same way. A hit memory-maps the serialized artifact and deserializes it.
+ * A miss compiles the module and writes the artifact, via a temporary file and atomic rename so that
+ * concurrent users of the directory never see a partial file.
+ * The directory is kept under a size bound by evicting the least recently used artifacts.
+ * <p>
+ * Note that deserialization trusts the artifact, so the cache directory must be writable only by trusted users.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class ModuleCache {
+
+    private static final Logger logger = Logger.getLogger(ModuleCache.class);
+
+    static final String SUFFIX = ".cwasm";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    /**
+     * @param directory where to keep the artifacts. Created if necessary.
+     * @param maxBytes  the total size above which the least recently used artifacts are removed.
+     */
+    public ModuleCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Obtain a module for the given wasm binary, from the cache if possible, or by compiling it otherwise.
+     */
+    public Module load(Store store, byte[] wasm) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}, {1} bytes", store, wasm.length);
+        }
+
+        Path path = directory.resolve(key(store.getEngine(), wasm) + SUFFIX);
+
+        Module module = deserialize(store, path, () -> Module.hash(ByteBuffer.wrap(wasm)));
+        if (module == null) {
+            logger.debugv("cache miss for {0}", path);
+            try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+                ByteVec binary = new ByteVec(resourceScope, wasm);
+                module = new Module(store, binary);
+                binary.close();
+            }
+            add(module, path);
+        }
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", module);
+        }
+        return module;
+    }
+
+    /**
+     * Obtain a module for the wasm binary in the given file, from the cache if possible, or by compiling it otherwise.
+     * The file is memory-mapped, for hashing and compiling, rather than read onto the heap.
+     */
+    public Module load(Store store, Path wasmFile) throws IOException {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}, {1}", store, wasmFile);
+        }
+
+        Module module;
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ByteVec binary = ByteVec.mapFile(resourceScope, wasmFile);
+            Path path = directory.resolve(key(store.getEngine(), binary.asSegment().asByteBuffer()) + SUFFIX);
+
+            module = deserialize(store, path, () -> Module.hash(binary.asSegment().asByteBuffer()));
+            if (module == null) {
+                logger.debugv("cache miss for {0}", path);
+                module = new Module(store, binary);
+                add(module, path);
+            }
+        }
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", module);
+        }
+        return module;
+    }
+
+    private void add(Module module, Path path) {
+        if (MemoryAddress.NULL.equals(module.address())) {
+            throw new IllegalArgumentException("module compilation failed");
+        }
+        write(module, path);
+        evict(path);
+    }
+
+    /**
+     * @return the cache key: a hex encoded sha-256 of the engine config fingerprint and the wasm binary.
+     */
+    public static String key(Engine engine, byte[] wasm) {
+        return key(engine, ByteBuffer.wrap(wasm));
+    }
+
+    private static String key(Engine engine, ByteBuffer wasm) {
+        return key(engine.getConfigFingerprint(), wasm);
+    }
+
+    static String key(String configFingerprint, ByteBuffer wasm) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(configFingerprint.getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) 0);
+            messageDigest.update(wasm);
+            return HexFormat.of().formatHex(messageDigest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Module deserialize(Store store, Path path, Supplier<String> sourceHash) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+
+        Module module = null;
+        try {
+            module = Module.deserializeFile(store, path, sourceHash);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.debugv(e, "unable to read {0}", path);
+        }
+
+        if (module != null && MemoryAddress.NULL.equals(module.address())) {
+            // e.g. written by a different wasmtime version. Replace it.
+            logger.debugv("unable to deserialize {0}", path);
+            module = null;
+        }
+
+        if (module != null) {
+            logger.debugv("cache hit for {0}", path);
+        }
+        return module;
+    }
+
+    private void write(Module module, Path path) {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ByteVec serialized = module.serialize(resourceScope);
+            Path tmp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel fileChannel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    ByteBuffer byteBuffer = serialized.asSegment().asByteBuffer();
+                    while (byteBuffer.hasRemaining()) {
+                        fileChannel.write(byteBuffer);
+                    }
+                }
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                serialized.close();
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            // the cache is an optimization, so carry on with the module we have.
+            logger.warnv(e, "unable to write {0}", path);
+        }
+    }
+
+    /**
+     * Removes the least recently used artifacts until the directory is within its size bound.
+     *
+     * @param keep an artifact that is not removed, e.g. the one just written.
+     */
+    synchronized void evict(Path keep) {
+        record Entry(Path path, long size, FileTime lastModifiedTime) {
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (!path.getFileName().toString().endsWith(SUFFIX)) {
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                entries.add(new Entry(path, attributes.size(), attributes.lastModifiedTime()));
+                total += attributes.size();
+            }
+        } catch (IOException e) {
+            logger.warnv(e, "unable to list {0}", directory);
+            return;
+        }
+
+        entries.sort(Comparator.comparing(Entry::lastModifiedTime));
+        for (Entry entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (entry.path().equals(keep)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(entry.path());
+                total -= entry.size();
+                logger.debugv("evicted {0}", entry.path());
+            } catch (IOException e) {
+                logger.warnv(e, "unable to evict {0}", entry.path());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ModuleCache{" +
+                "directory=" + directory +
+                ", maxBytes=" + maxBytes +
+                '}';
+    }
+}
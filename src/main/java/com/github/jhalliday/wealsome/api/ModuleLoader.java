@@ -0,0 +1,165 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemoryAddress;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compiles many modules concurrently, e.g. at startup.
+ * <p>
+ * Each module is compiled in a throwaway Store on a bounded ForkJoinPool, then shared as a {@link SharedModule},
+ * so the result can be obtained into any Store on any thread via the returned {@link ModuleRegistry}.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class ModuleLoader {
+
+    private static final Logger logger = Logger.getLogger(ModuleLoader.class);
+
+    private final Engine engine;
+    private final int parallelism;
+
+    public ModuleLoader(Engine engine) {
+        this(engine, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism the maximum number of modules compiled at once.
+     */
+    public ModuleLoader(Engine engine, int parallelism) {
+        this.engine = engine;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Compiles the .wasm files, each registered under its file name without the .wasm suffix.
+     * A file that fails to compile does not stop the others, but is reported by {@link ModuleRegistry#getFailures()}.
+     * If two files have the same name, the first in iteration order is kept and the later is reported as a failure.
+     * If the calling thread is interrupted, it stops waiting, closes any modules it has not yet taken,
+     * and reports the rest as interrupted.
+     *
+     * @return the compiled modules, which the caller should close when done with them.
+     */
+    public ModuleRegistry compileAll(Collection<Path> paths) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0} paths", paths.size());
+        }
+
+        long start = System.nanoTime();
+        Map<String, ModuleRegistry.Entry> entries = new LinkedHashMap<>();
+        Map<Path, String> failures = new LinkedHashMap<>();
+
+        // compiled modules not yet taken by this thread, so that they can be closed if it stops waiting for them.
+        Set<ModuleRegistry.Entry> unclaimed = new HashSet<>();
+        AtomicBoolean abandoned = new AtomicBoolean();
+
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<ModuleRegistry.Entry>> futures = new ArrayList<>(paths.size());
+            for (Path path : paths) {
+                futures.add(forkJoinPool.submit(() -> compile(path, unclaimed, abandoned)));
+            }
+            Iterator<Path> pathIterator = paths.iterator();
+            for (Future<ModuleRegistry.Entry> future : futures) {
+                Path path = pathIterator.next();
+                if (abandoned.get()) {
+                    future.cancel(false);
+                    failures.put(path, "interrupted");
+                    continue;
+                }
+                try {
+                    ModuleRegistry.Entry entry = future.get();
+                    synchronized (unclaimed) {
+                        unclaimed.remove(entry);
+                    }
+                    ModuleRegistry.Entry first = entries.putIfAbsent(entry.name(), entry);
+                    if (first != null) {
+                        entry.sharedModule().close();
+                        failures.put(entry.path(), "duplicate module name " + entry.name() + ", already loaded from " + first.path());
+                    }
+                } catch (ExecutionException e) {
+                    failures.put(path, String.valueOf(e.getCause().getMessage()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.put(path, "interrupted");
+                    synchronized (unclaimed) {
+                        abandoned.set(true);
+                        for (ModuleRegistry.Entry entry : unclaimed) {
+                            entry.sharedModule().close();
+                        }
+                        unclaimed.clear();
+                    }
+                }
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+
+        Duration wallClock = Duration.ofNanos(System.nanoTime() - start);
+        ModuleRegistry moduleRegistry = new ModuleRegistry(entries, failures, wallClock);
+        logger.debugv("compiled {0} modules with {1} failures in {2}", entries.size(), failures.size(), wallClock);
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", moduleRegistry);
+        }
+        return moduleRegistry;
+    }
+
+    /**
+     * Compiles the module and hands it to the waiting thread, or closes it if that thread has given up waiting.
+     */
+    private ModuleRegistry.Entry compile(Path path, Set<ModuleRegistry.Entry> unclaimed, AtomicBoolean abandoned) throws IOException {
+        ModuleRegistry.Entry entry = compile(path);
+        synchronized (unclaimed) {
+            if (abandoned.get()) {
+                entry.sharedModule().close();
+                throw new CancellationException("module loading was interrupted");
+            }
+            unclaimed.add(entry);
+        }
+        return entry;
+    }
+
+    private ModuleRegistry.Entry compile(Path path) throws IOException {
+        String name = path.getFileName().toString().replaceFirst("\\.wasm$", "");
+        long start = System.nanoTime();
+        try (Store store = engine.newStore()) {
+            Module module = Module.fromFile(store, path);
+            if (MemoryAddress.NULL.equals(module.address())) {
+                throw new IllegalArgumentException("module compilation failed");
+            }
+            SharedModule sharedModule = new SharedModule(module);
+            module.close();
+            return new ModuleRegistry.Entry(name, path, sharedModule, Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ModuleLoader{" +
+                "engine=" + engine +
+                ", parallelism=" + parallelism +
+                '}';
+    }
+}
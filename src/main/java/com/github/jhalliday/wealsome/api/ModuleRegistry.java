@@ -0,0 +1,106 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import org.jboss.logging.Logger;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled modules, by name, as produced by {@link ModuleLoader#compileAll(java.util.Collection)}.
+ * Modules are held in shared form, so may be obtained into any Store, from any thread.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class ModuleRegistry implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(ModuleRegistry.class);
+
+    /**
+     * @param compileTime the time taken to compile the module, on its worker thread.
+     */
+    record Entry(String name, Path path, SharedModule sharedModule, Duration compileTime) {
+    }
+
+    private final Map<String, Entry> entries;
+    private final Map<Path, String> failures;
+    private final Duration wallClock;
+
+    ModuleRegistry(Map<String, Entry> entries, Map<Path, String> failures, Duration wallClock) {
+        this.entries = Collections.unmodifiableMap(entries);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.wallClock = wallClock;
+    }
+
+    public Set<String> getNames() {
+        return entries.keySet();
+    }
+
+    /**
+     * @return a module for use in the given store, which the caller should close.
+     * @throws IllegalArgumentException if there is no module of that name.
+     */
+    public Module obtain(Store store, String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("no module named " + name);
+        }
+        return store.obtainModule(entry.sharedModule());
+    }
+
+    /**
+     * @return the compile time of each module, by name.
+     */
+    public Map<String, Duration> getCompileTimes() {
+        Map<String, Duration> compileTimes = new LinkedHashMap<>();
+        for (Entry entry : entries.values()) {
+            compileTimes.put(entry.name(), entry.compileTime());
+        }
+        return compileTimes;
+    }
+
+    /**
+     * @return the elapsed time to compile all the modules.
+     */
+    public Duration getWallClock() {
+        return wallClock;
+    }
+
+    /**
+     * @return the files that could not be loaded, with the reason.
+     */
+    public Map<Path, String> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public void close() {
+        for (Entry entry : entries.values()) {
+            entry.sharedModule().close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ModuleRegistry{" +
+                "modules=" + entries.size() +
+                ", failures=" + failures.size() +
+                ", wallClock=" + wallClock +
+                '}';
+    }
+}
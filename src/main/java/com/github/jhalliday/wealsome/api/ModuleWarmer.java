@@ -0,0 +1,120 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import org.jboss.logging.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiles {@link LazyModule}s in the background, highest priority first, so that they are ready before first use.
+ * <p>
+ * The warmer runs on a single minimum priority daemon thread and, where the platform reports a load average,
+ * compiles only whilst the system load is below the number of processors, so as not to compete with real work.
+ * A module obtained before the warmer reaches it is simply compiled by its first user instead.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class ModuleWarmer implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(ModuleWarmer.class);
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final PriorityBlockingQueue<LazyModule> queue =
+            new PriorityBlockingQueue<>(16, Comparator.comparingInt(LazyModule::getPriority).reversed());
+    private final OperatingSystemMXBean operatingSystemMXBean = ManagementFactory.getOperatingSystemMXBean();
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    public ModuleWarmer() {
+        thread = new Thread(this::run, "wealsome-module-warmer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    public ModuleWarmer(Collection<LazyModule> lazyModules) {
+        this();
+        queue.addAll(lazyModules);
+    }
+
+    public void add(LazyModule lazyModule) {
+        queue.add(lazyModule);
+    }
+
+    /**
+     * @return the number of modules still waiting to be compiled.
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                LazyModule lazyModule = queue.take();
+                while (running && !isIdle()) {
+                    Thread.sleep(IDLE_POLL_MILLIS);
+                }
+                if (!running) {
+                    return;
+                }
+                if (!lazyModule.isCompiled()) {
+                    try {
+                        lazyModule.compile();
+                    } catch (RuntimeException e) {
+                        // the first user will see the failure for itself.
+                        logger.debugv("could not compile {0}: {1}", lazyModule, e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    private boolean isIdle() {
+        double loadAverage = operatingSystemMXBean.getSystemLoadAverage();
+        // negative means not available on this platform, in which case rely on the thread priority.
+        return loadAverage < 0 || loadAverage < operatingSystemMXBean.getAvailableProcessors();
+    }
+
+    /**
+     * Stops the warmer. A compilation already in progress is allowed to finish.
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ModuleWarmer{" +
+                "pending=" + queue.size() +
+                ", running=" + running +
+                '}';
+    }
+}
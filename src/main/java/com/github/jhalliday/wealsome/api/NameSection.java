@@ -0,0 +1,127 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads function names from the "name" custom section of a wasm binary, for labelling guest stack frames.
+ * <p>
+ * Compiled modules do not retain the binary, so the names are read from it directly.
+ * A binary without a name section, or with a malformed one, simply yields fewer names.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ * @see <a href="https://webassembly.github.io/spec/core/appendix/custom.html#name-section">Name Section</a>
+ */
+public final class NameSection {
+
+    private static final Logger logger = Logger.getLogger(NameSection.class);
+
+    private static final int MAGIC = 0x6d736100; // "\0asm", little-endian
+    private static final int CUSTOM_SECTION = 0;
+    private static final int FUNCTION_NAMES = 1;
+
+    private NameSection() {
+    }
+
+    /**
+     * @return the function names, by function index.
+     */
+    public static Map<Integer, String> functionNames(Path path) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return functionNames(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size()));
+        }
+    }
+
+    /**
+     * @return the function names, by function index.
+     */
+    public static Map<Integer, String> functionNames(byte[] wasm) {
+        return functionNames(ByteBuffer.wrap(wasm));
+    }
+
+    /**
+     * @param wasm the module binary, from its current position to its limit. The position is not changed.
+     * @return the function names, by function index.
+     */
+    public static Map<Integer, String> functionNames(ByteBuffer wasm) {
+        ByteBuffer buffer = wasm.slice().order(ByteOrder.LITTLE_ENDIAN);
+        Map<Integer, String> names = new HashMap<>();
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("not a wasm binary");
+            }
+            buffer.getInt(); // version
+            while (buffer.hasRemaining()) {
+                int id = buffer.get();
+                int size = readU32(buffer);
+                int end = buffer.position() + size;
+                if (id == CUSTOM_SECTION && "name".equals(readName(buffer))) {
+                    // a truncated binary still yields the names before the point it was cut.
+                    readFunctionNames(buffer.slice().limit(Math.min(end, buffer.limit()) - buffer.position()), names);
+                }
+                buffer.position(end);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            logger.debugv("stopped reading names: {0}", e.toString());
+        }
+        return Collections.unmodifiableMap(names);
+    }
+
+    private static void readFunctionNames(ByteBuffer section, Map<Integer, String> names) {
+        while (section.hasRemaining()) {
+            int id = section.get();
+            int size = readU32(section);
+            int end = section.position() + size;
+            if (id == FUNCTION_NAMES) {
+                int count = readU32(section);
+                for (int i = 0; i < count; i++) {
+                    int index = readU32(section);
+                    names.put(index, readName(section));
+                }
+            }
+            section.position(end);
+        }
+    }
+
+    private static String readName(ByteBuffer buffer) {
+        byte[] bytes = new byte[readU32(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // unsigned LEB128
+    private static int readU32(ByteBuffer buffer) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("malformed LEB128");
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemorySegment;
+import org.jboss.logging.Logger;
+
+import java.nio.ByteOrder;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * A region of an instance's linear memory for exchanging arrays of primitives with guest code in bulk.
+ * <p>
+ * The region is allocated once, by calling the module's exported allocator, of type [i32] -> [i32]
+ * (size in bytes to guest pointer). Java then places arrays at positions within the region, calls a kernel
+ * with the guest pointer and length, and reads the results back, with each transfer being a single copy.
+ * <p>
+ * Guest memory is little-endian and the copies are not byte-swapped, so this requires a little-endian host.
+ * Like the Instance it belongs to, a channel is not for concurrent use.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class PrimitiveArrayChannel {
+
+    private static final Logger logger = Logger.getLogger(PrimitiveArrayChannel.class);
+
+    private final Instance instance;
+    private final Memory memory;
+    private final int base;
+    private final long capacity;
+
+    /**
+     * @param memoryExport    the name of the exported memory.
+     * @param allocatorExport the name of the exported allocator, [i32] -> [i32].
+     * @param capacity        the size of the region, in bytes.
+     * @throws IllegalArgumentException if the exports are missing, or the allocation fails.
+     */
+    public PrimitiveArrayChannel(Instance instance, String memoryExport, String allocatorExport, int capacity) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}, {1}, {2}, {3}", instance, memoryExport, allocatorExport, capacity);
+        }
+
+        if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+            throw new UnsupportedOperationException("bulk copies require a little-endian host");
+        }
+
+        this.instance = instance;
+        this.memory = instance.memory(memoryExport);
+        this.capacity = capacity;
+        base = instance.func(allocatorExport).asIntUnaryOperator().applyAsInt(capacity);
+        if (base == 0 || Integer.toUnsignedLong(base) + capacity > memory.byteSize()) {
+            throw new IllegalArgumentException("allocation of " + capacity + " bytes failed, returned " + base);
+        }
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", this);
+        }
+    }
+
+    /**
+     * @return the guest pointer to the start of the region.
+     */
+    public int getBase() {
+        return base;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return an invoker for an exported kernel of type [i32 i32] -> [i32], taking a guest pointer and a length.
+     */
+    public IntBinaryOperator kernel(String exportName) {
+        return instance.func(exportName).asIntBinaryOperator();
+    }
+
+    /**
+     * Copies the source into the region.
+     *
+     * @param position the byte offset in the region.
+     * @return the guest pointer to the data.
+     */
+    public int put(long position, MemorySegment src) {
+        long offset = offset(position, src.byteSize());
+        memory.copyFrom(offset, src);
+        return (int) offset;
+    }
+
+    public int put(long position, int[] src) {
+        return put(position, MemorySegment.ofArray(src));
+    }
+
+    public int put(long position, long[] src) {
+        return put(position, MemorySegment.ofArray(src));
+    }
+
+    public int put(long position, float[] src) {
+        return put(position, MemorySegment.ofArray(src));
+    }
+
+    public int put(long position, double[] src) {
+        return put(position, MemorySegment.ofArray(src));
+    }
+
+    /**
+     * Fills the destination from the region.
+     *
+     * @param position the byte offset in the region.
+     */
+    public void get(long position, MemorySegment dst) {
+        memory.copyTo(offset(position, dst.byteSize()), dst);
+    }
+
+    public void get(long position, int[] dst) {
+        get(position, MemorySegment.ofArray(dst));
+    }
+
+    public void get(long position, long[] dst) {
+        get(position, MemorySegment.ofArray(dst));
+    }
+
+    public void get(long position, float[] dst) {
+        get(position, MemorySegment.ofArray(dst));
+    }
+
+    public void get(long position, double[] dst) {
+        get(position, MemorySegment.ofArray(dst));
+    }
+
+    private long offset(long position, long byteSize) {
+        if (position < 0 || position + byteSize > capacity) {
+            throw new IndexOutOfBoundsException("[" + position + ", " + (position + byteSize) + ") is outside the channel's " + capacity + " bytes");
+        }
+        return Integer.toUnsignedLong(base) + position;
+    }
+
+    @Override
+    public String toString() {
+        return "PrimitiveArrayChannel{" +
+                "base=" + base +
+                ", capacity=" + capacity +
+                '}';
+    }
+}
@@ -24,9 +24,18 @@ public class SharedModule implements Addressable, AutoCloseable {
     private static final Logger logger = Logger.getLogger(SharedModule.class);
 
     private final MemoryAddress address;
+    private final String hash;
 
     public SharedModule(Module module) {
         address = WasmAPI.module_share(module);
+        hash = module.getHash();
+    }
+
+    /**
+     * @return the hash of the module this was shared from, see {@link Module#getHash()}.
+     */
+    public String getHash() {
+        return hash;
     }
 
     @Override
@@ -0,0 +1,90 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock free handoff where a worker with nothing to do spins for a while before parking.
+ * <p>
+ * Under steady load a worker finds the next item while still spinning, so neither the submitter
+ * nor the worker pays for a lock or a park/unpark pair. The submitter only unparks a worker
+ * that has actually parked. The cost is CPU burnt by idle workers, bounded by the spin count.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+final class SpinParkHandoff<T> implements Handoff<T> {
+
+    static final int DEFAULT_SPINS = 1 << 12;
+
+    private final ConcurrentLinkedQueue<T> items = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Thread> parked = new ConcurrentLinkedQueue<>();
+    private final int spins;
+
+    SpinParkHandoff(int spins) {
+        this.spins = spins;
+    }
+
+    @Override
+    public void put(T item) {
+        items.offer(item);
+        Thread waiter = parked.poll();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        for (int i = 0; i < spins; i++) {
+            T item = items.poll();
+            if (item != null) {
+                return item;
+            }
+            Thread.onSpinWait();
+        }
+
+        Thread self = Thread.currentThread();
+        while (true) {
+            T item = items.poll();
+            if (item != null) {
+                return item;
+            }
+            // register before the final check, so a put racing with us is guaranteed to see us and unpark.
+            parked.offer(self);
+            item = items.poll();
+            if (item != null) {
+                parked.remove(self);
+                return item;
+            }
+            LockSupport.park(this);
+            parked.remove(self);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    @Override
+    public T poll() {
+        return items.poll();
+    }
+
+    @Override
+    public String toString() {
+        return "SpinParkHandoff{" +
+                "spins=" + spins +
+                '}';
+    }
+}
@@ -16,6 +16,8 @@ import jdk.incubator.foreign.Addressable;
 import jdk.incubator.foreign.MemoryAddress;
 import org.jboss.logging.Logger;
 
+import java.util.function.*;
+
 /**
  * A container (i.e. context) for all information related to WebAssembly objects such as functions, instances, memories, etc.
  *
@@ -42,10 +44,41 @@ public class Store implements Addressable, AutoCloseable {
         }
     }
 
+    public Engine getEngine() {
+        return engine;
+    }
+
     public Func newFunc(FuncType funcType, MemoryAddress stub) {
         return new Func(this, funcType, stub);
     }
 
+    // Host functions bound from Java lambdas. See HostFuncs for how the calls are dispatched.
+    // An exception thrown by the lambda is returned to the wasm caller as a trap.
+
+    public Func newIntUnaryFunc(IntUnaryOperator function) {
+        return HostFuncs.newIntUnaryFunc(this, function);
+    }
+
+    public Func newIntBinaryFunc(IntBinaryOperator function) {
+        return HostFuncs.newIntBinaryFunc(this, function);
+    }
+
+    public Func newLongUnaryFunc(LongUnaryOperator function) {
+        return HostFuncs.newLongUnaryFunc(this, function);
+    }
+
+    public Func newLongBinaryFunc(LongBinaryOperator function) {
+        return HostFuncs.newLongBinaryFunc(this, function);
+    }
+
+    public Func newDoubleUnaryFunc(DoubleUnaryOperator function) {
+        return HostFuncs.newDoubleUnaryFunc(this, function);
+    }
+
+    public Func newDoubleBinaryFunc(DoubleBinaryOperator function) {
+        return HostFuncs.newDoubleBinaryFunc(this, function);
+    }
+
     public Module deserializeModule(ByteVec byteVec) {
         Module module = new Module(this, byteVec, true);
         return module;
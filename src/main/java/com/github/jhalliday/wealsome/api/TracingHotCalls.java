@@ -0,0 +1,81 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.Addressable;
+import jdk.incubator.foreign.MemoryAddress;
+import org.jboss.logging.Logger;
+
+/**
+ * Logs each hot path call at trace level before delegating it.
+ * Only used if selected at startup, so the default path carries no trace guard.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+final class TracingHotCalls implements HotCalls {
+
+    private static final Logger logger = Logger.getLogger(WasmAPI.class);
+
+    private final HotCalls delegate;
+
+    TracingHotCalls(HotCalls delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public MemoryAddress func_call(Addressable x0, Addressable args, Addressable results) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("func_call(x0=" + x0 + ", args=" + args + ", results=" + results + ")");
+        }
+        return delegate.func_call(x0, args, results);
+    }
+
+    @Override
+    public void global_get(Addressable x0, Addressable out) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("global_get(x0=" + x0 + ", out=" + out + ")");
+        }
+        delegate.global_get(x0, out);
+    }
+
+    @Override
+    public void global_set(Addressable x0, Addressable x1) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("global_set(x0=" + x0 + ", x1=" + x1 + ")");
+        }
+        delegate.global_set(x0, x1);
+    }
+
+    @Override
+    public MemoryAddress memory_data(Addressable x0) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("memory_data(x0=" + x0 + ")");
+        }
+        return delegate.memory_data(x0);
+    }
+
+    @Override
+    public long memory_data_size(Addressable x0) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("memory_data_size(x0=" + x0 + ")");
+        }
+        return delegate.memory_data_size(x0);
+    }
+
+    @Override
+    public String toString() {
+        return "TracingHotCalls{" +
+                "delegate=" + delegate +
+                '}';
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+/**
+ * The reason for a trap raised by wasm code itself, as opposed to one raised by the host.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ * @see <a href="https://docs.wasmtime.dev/c-api/trap_8h.html">trap.h</a>
+ */
+public enum TrapCode {
+
+    STACK_OVERFLOW(0),
+    MEMORY_OUT_OF_BOUNDS(1),
+    HEAP_MISALIGNED(2),
+    TABLE_OUT_OF_BOUNDS(3),
+    INDIRECT_CALL_TO_NULL(4),
+    BAD_SIGNATURE(5),
+    INTEGER_OVERFLOW(6),
+    INTEGER_DIVISION_BY_ZERO(7),
+    BAD_CONVERSION_TO_INTEGER(8),
+    UNREACHABLE_CODE_REACHED(9),
+    INTERRUPT(10);
+
+    private final int cnum;
+
+    TrapCode(int cnum) {
+        this.cnum = cnum;
+    }
+
+    /**
+     * @return the code for the given wasmtime_trap_code_t, or null if it is not one we know.
+     */
+    static TrapCode fromCNum(int cnum) {
+        for (TrapCode trapCode : TrapCode.values()) {
+            if (trapCode.cnum == cnum) {
+                return trapCode;
+            }
+        }
+        return null;
+    }
+}
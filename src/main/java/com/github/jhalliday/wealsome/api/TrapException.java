@@ -0,0 +1,65 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemoryAddress;
+
+import java.time.Duration;
+
+/**
+ * Thrown by the typed call paths when the wasm function traps, since they have no other way to report it.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class TrapException extends RuntimeException {
+
+    private final boolean timeout;
+
+    public TrapException(String message) {
+        this(message, false);
+    }
+
+    private TrapException(String message, boolean timeout) {
+        super(message);
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return a trap standing in for a call that did not complete before its deadline.
+     */
+    static TrapException timeout(Duration duration) {
+        return new TrapException("deadline of " + duration + " exceeded", true);
+    }
+
+    /**
+     * @return true if the call did not trap in wasm, but was abandoned for exceeding its deadline.
+     */
+    public boolean isTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Reads the message from the trap and then deletes it.
+     *
+     * @param trapAddress an owned wasm_trap_t*
+     */
+    static TrapException of(MemoryAddress trapAddress) {
+        try {
+            String text = TrapResult.decodeMessage(trapAddress);
+            TrapResult.observe(trapAddress, text);
+            return new TrapException(text);
+        } finally {
+            WasmAPI.trap_delete(trapAddress);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import com.github.jhalliday.wealsome.generated.wasm_byte_vec_t;
+import jdk.incubator.foreign.*;
+import org.jboss.logging.Logger;
+
+import java.util.Optional;
+
+/**
+ * The outcome of the last trapping call on this thread, held without decoding it.
+ * <p>
+ * Each thread has one reusable instance, see {@link #current()}, which the non-throwing call paths
+ * ({@link WasmFunc#tryApply(ValVec, ValVec)}, typed invokers such as {@link WasmFunc#asIntUnaryOperator(int)},
+ * {@link Func#tryApply(ValVec, ValVec)}, {@link Instance#instantiate(Store, Module, ExternVec)}) fill in place
+ * of allocating per failure. It owns the wasm_trap_t* until the next trap on the thread replaces it,
+ * or {@link #clear()} is called. The message, code and frames are read from the trap only when asked for,
+ * so a workload which traps often, but only cares that it did, pays no decoding cost.
+ * <p>
+ * Confined to the thread that obtained it via {@link #current()}.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public final class TrapResult {
+
+    private static final Logger logger = Logger.getLogger(TrapResult.class);
+
+    private static final boolean CODES_AVAILABLE = WasmtimeAPI.isAvailable("wasmtime_trap_code");
+
+    private static final ThreadLocal<TrapResult> current = ThreadLocal.withInitial(TrapResult::new);
+
+    // the out param slots live as long as the thread holds them, so let the GC release the native memory.
+    private final MemorySegment trapOut;
+    private final MemorySegment codeOut;
+
+    private MemoryAddress trapAddress = MemoryAddress.NULL;
+    private String message;
+
+    private TrapResult() {
+        ResourceScope resourceScope = ResourceScope.newImplicitScope();
+        trapOut = MemorySegment.allocateNative(WasmAPI.pointerMemoryLayout, resourceScope);
+        codeOut = MemorySegment.allocateNative(CLinker.C_CHAR, resourceScope);
+    }
+
+    /**
+     * @return the result holder for the calling thread.
+     */
+    public static TrapResult current() {
+        return current.get();
+    }
+
+    /**
+     * Takes ownership of the trap, releasing any previous one.
+     *
+     * @param trapAddress an owned wasm_trap_t*, or NULL for no trap.
+     * @return true if there was a trap.
+     */
+    boolean set(MemoryAddress trapAddress) {
+        clear();
+        this.trapAddress = trapAddress;
+        if (MemoryAddress.NULL.equals(trapAddress)) {
+            return false;
+        }
+        observe(trapAddress, null);
+        return true;
+    }
+
+    /**
+     * Reports a guest trap to the active {@link GuestProfiler} and as a {@link WasmEvents.TrapEvent}.
+     * The message is decoded only if the event will be recorded.
+     *
+     * @param message the message, if the caller has already decoded it, else null.
+     */
+    static void observe(MemoryAddress trapAddress, String message) {
+        GuestProfiler guestProfiler = GuestProfiler.active();
+        if (guestProfiler != null) {
+            guestProfiler.onTrap(trapAddress);
+        }
+        WasmEvents.TrapEvent trapEvent = new WasmEvents.TrapEvent();
+        if (trapEvent.shouldCommit()) {
+            trapEvent.message = message != null ? message : decodeMessage(trapAddress);
+            trapEvent.commit();
+        }
+    }
+
+    /**
+     * @param trapAddress a wasm_trap_t*, which remains owned by the caller.
+     * @return the trap's message, without the null terminator.
+     */
+    static String decodeMessage(MemoryAddress trapAddress) {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ByteVec byteVec = new ByteVec(resourceScope, wasm_byte_vec_t.allocate(resourceScope));
+            WasmAPI.trap_message(trapAddress, byteVec);
+            String text = byteVec.asString();
+            byteVec.close();
+            // the message is null terminated and the size includes it.
+            return text.endsWith("\0") ? text.substring(0, text.length() - 1) : text;
+        }
+    }
+
+    /**
+     * @return a wasm_trap_t** for use as an out param, e.g. to wasm_instance_new.
+     */
+    MemoryAddress trapOut() {
+        MemoryAccess.setAddress(trapOut, MemoryAddress.NULL);
+        return trapOut.address();
+    }
+
+    /**
+     * Takes ownership of the trap, if any, written to {@link #trapOut()}, releasing any previous one.
+     * If there is none, the previous trap is left in place.
+     *
+     * @return true if there was a trap.
+     */
+    boolean setFromTrapOut() {
+        MemoryAddress trapAddress = MemoryAccess.getAddress(trapOut);
+        return !MemoryAddress.NULL.equals(trapAddress) && set(trapAddress);
+    }
+
+    public boolean isTrapped() {
+        return !MemoryAddress.NULL.equals(trapAddress);
+    }
+
+    /**
+     * @return the trap's message, decoded on first request, or null if there is no trap.
+     */
+    public String getMessage() {
+        if (message == null && isTrapped()) {
+            message = decodeMessage(trapAddress);
+        }
+        return message;
+    }
+
+    /**
+     * @return the reason for a trap raised by wasm code. Empty if there is no trap, the trap was raised by the host,
+     * or the wasmtime version does not report codes.
+     */
+    public Optional<TrapCode> getCode() {
+        if (!CODES_AVAILABLE || !isTrapped()) {
+            return Optional.empty();
+        }
+        if (WasmtimeAPI.trap_code(trapAddress, codeOut) == 0) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(TrapCode.fromCNum(Byte.toUnsignedInt(MemoryAccess.getByte(codeOut))));
+    }
+
+    /**
+     * @return the function index of the frame that trapped, or -1 if there is no trap or it has no origin.
+     */
+    public int getOriginFuncIndex() {
+        if (!isTrapped()) {
+            return -1;
+        }
+        MemoryAddress frame = WasmAPI.trap_origin(trapAddress);
+        if (MemoryAddress.NULL.equals(frame)) {
+            return -1;
+        }
+        try {
+            return WasmAPI.frame_func_index(frame);
+        } finally {
+            WasmAPI.frame_delete(frame);
+        }
+    }
+
+    /**
+     * @return the guest stack at the trap, innermost first, owned by the caller, who should close it.
+     * @throws IllegalStateException if there is no trap.
+     */
+    public FrameVec getFrames(ResourceScope resourceScope) {
+        if (!isTrapped()) {
+            throw new IllegalStateException("no trap");
+        }
+        FrameVec frameVec = new FrameVec(resourceScope);
+        WasmAPI.trap_trace(trapAddress, frameVec);
+        return frameVec;
+    }
+
+    /**
+     * @return an exception carrying the trap's message.
+     * @throws IllegalStateException if there is no trap.
+     */
+    public TrapException toException() {
+        if (!isTrapped()) {
+            throw new IllegalStateException("no trap");
+        }
+        return new TrapException(getMessage());
+    }
+
+    /**
+     * Releases the trap, if any.
+     */
+    public void clear() {
+        if (isTrapped()) {
+            WasmAPI.trap_delete(trapAddress);
+            trapAddress = MemoryAddress.NULL;
+        }
+        message = null;
+    }
+
+    @Override
+    public String toString() {
+        return "TrapResult{" +
+                "trap=" + trapAddress +
+                '}';
+    }
+}
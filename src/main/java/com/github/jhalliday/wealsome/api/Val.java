@@ -17,6 +17,7 @@ import jdk.incubator.foreign.Addressable;
 import jdk.incubator.foreign.MemoryAddress;
 import jdk.incubator.foreign.MemorySegment;
 import jdk.incubator.foreign.ResourceScope;
+import jdk.incubator.foreign.SegmentAllocator;
 import org.jboss.logging.Logger;
 
 /**
@@ -30,20 +31,27 @@ public class Val implements Addressable, AutoCloseable {
     public final ValType valType;
     public final Number value;
     public final MemorySegment val_t;
+    private final boolean shouldDelete;
 
     public Val(ResourceScope resourceScope, ValType valType, Number value) {
+        this(resourceScope, SegmentAllocator.ofScope(resourceScope), valType, value, true);
+    }
+
+    /**
+     * Creates the val in the arena, valid until the arena is closed.
+     */
+    public Val(CallArena callArena, ValType valType, Number value) {
+        this(callArena.scope(), callArena, valType, value, false);
+    }
+
+    private Val(ResourceScope resourceScope, SegmentAllocator segmentAllocator, ValType valType, Number value, boolean shouldDelete) {
         this.resourceScope = resourceScope;
         this.valType = valType;
         this.value = value;
+        this.shouldDelete = shouldDelete;
 
-        val_t = wasm_val_t.allocate(resourceScope);
-        wasm_val_t.kind$set(val_t, (byte) valType.ordinal());
-        switch (valType) {
-            case I32 -> wasm_val_t.of.i32$set(wasm_val_t.of$slice(val_t), (int) value);
-            case I64 -> wasm_val_t.of.i64$set(wasm_val_t.of$slice(val_t), (long) value);
-            case F32 -> wasm_val_t.of.f32$set(wasm_val_t.of$slice(val_t), (float) value);
-            case F64 -> wasm_val_t.of.f64$set(wasm_val_t.of$slice(val_t), (double) value);
-        }
+        val_t = wasm_val_t.allocate(segmentAllocator);
+        ValCodec.of(valType).write(val_t, 0, value);
     }
 
     @Override
@@ -53,6 +61,8 @@ public class Val implements Addressable, AutoCloseable {
 
     @Override
     public void close() {
-        WasmAPI.val_delete(val_t);
+        if (shouldDelete) {
+            WasmAPI.val_delete(val_t);
+        }
     }
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import com.github.jhalliday.wealsome.generated.wasm_val_t;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.MemoryHandles;
+import jdk.incubator.foreign.MemoryLayout;
+import jdk.incubator.foreign.MemorySegment;
+
+import java.lang.invoke.VarHandle;
+import java.util.List;
+
+import static jdk.incubator.foreign.MemoryLayout.PathElement.groupElement;
+import static jdk.incubator.foreign.MemoryLayout.PathElement.sequenceElement;
+
+/**
+ * Reads and writes one kind of value in an array of wasm_val_t.
+ * <p>
+ * Each kind has its own accessor, bound to the VarHandle for its member of the 'of' union,
+ * so code that resolves the codecs for a signature up front does not switch on the type per value.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+enum ValCodec {
+
+    I32(ValType.I32) {
+        @Override
+        void write(MemorySegment vals, long index, Number value) {
+            KIND.set(vals, index, CallSlots.I32);
+            OF_I32.set(vals, index, value.intValue());
+        }
+
+        @Override
+        Number read(MemorySegment vals, long index) {
+            return (int) OF_I32.get(vals, index);
+        }
+    },
+    I64(ValType.I64) {
+        @Override
+        void write(MemorySegment vals, long index, Number value) {
+            KIND.set(vals, index, CallSlots.I64);
+            OF_I64.set(vals, index, value.longValue());
+        }
+
+        @Override
+        Number read(MemorySegment vals, long index) {
+            return (long) OF_I64.get(vals, index);
+        }
+    },
+    F32(ValType.F32) {
+        @Override
+        void write(MemorySegment vals, long index, Number value) {
+            KIND.set(vals, index, CallSlots.F32);
+            OF_F32.set(vals, index, value.floatValue());
+        }
+
+        @Override
+        Number read(MemorySegment vals, long index) {
+            return (float) OF_F32.get(vals, index);
+        }
+    },
+    F64(ValType.F64) {
+        @Override
+        void write(MemorySegment vals, long index, Number value) {
+            KIND.set(vals, index, CallSlots.F64);
+            OF_F64.set(vals, index, value.doubleValue());
+        }
+
+        @Override
+        Number read(MemorySegment vals, long index) {
+            return (double) OF_F64.get(vals, index);
+        }
+    },
+    // references are carried as the raw address of the wasm_ref_t, with 0 for null.
+    ANYREF(ValType.ANYREF) {
+        @Override
+        void write(MemorySegment vals, long index, Number value) {
+            writeRef(vals, index, ValType.ANYREF.kind(), value);
+        }
+
+        @Override
+        Number read(MemorySegment vals, long index) {
+            return readRef(vals, index);
+        }
+    },
+    FUNCREF(ValType.FUNCREF) {
+        @Override
+        void write(MemorySegment vals, long index, Number value) {
+            writeRef(vals, index, ValType.FUNCREF.kind(), value);
+        }
+
+        @Override
+        Number read(MemorySegment vals, long index) {
+            return readRef(vals, index);
+        }
+    };
+
+    private static final MemoryLayout VALS = MemoryLayout.sequenceLayout(wasm_val_t.$LAYOUT());
+
+    private static final VarHandle KIND = VALS.varHandle(byte.class, sequenceElement(), groupElement("kind"));
+    private static final VarHandle OF_I32 = VALS.varHandle(int.class, sequenceElement(), groupElement("of"), groupElement("i32"));
+    private static final VarHandle OF_I64 = VALS.varHandle(long.class, sequenceElement(), groupElement("of"), groupElement("i64"));
+    private static final VarHandle OF_F32 = VALS.varHandle(float.class, sequenceElement(), groupElement("of"), groupElement("f32"));
+    private static final VarHandle OF_F64 = VALS.varHandle(double.class, sequenceElement(), groupElement("of"), groupElement("f64"));
+    private static final VarHandle OF_REF = MemoryHandles.asAddressVarHandle(
+            VALS.varHandle(long.class, sequenceElement(), groupElement("of"), groupElement("ref")));
+
+    final ValType valType;
+
+    ValCodec(ValType valType) {
+        this.valType = valType;
+    }
+
+    /**
+     * Sets the kind and value of vals[index], converting the value to this codec's type.
+     */
+    abstract void write(MemorySegment vals, long index, Number value);
+
+    /**
+     * @return the value of vals[index], boxed as the Java type corresponding to this codec's type.
+     */
+    abstract Number read(MemorySegment vals, long index);
+
+    static ValCodec of(ValType valType) {
+        return switch (valType) {
+            case I32 -> I32;
+            case I64 -> I64;
+            case F32 -> F32;
+            case F64 -> F64;
+            case ANYREF -> ANYREF;
+            case FUNCREF -> FUNCREF;
+        };
+    }
+
+    static ValCodec[] of(List<ValType> valTypes) {
+        ValCodec[] codecs = new ValCodec[valTypes.size()];
+        for (int i = 0; i < codecs.length; i++) {
+            codecs[i] = of(valTypes.get(i));
+        }
+        return codecs;
+    }
+
+    /**
+     * @return the codec for the kind already set in vals[index].
+     */
+    static ValCodec forKind(MemorySegment vals, long index) {
+        byte kind = (byte) KIND.get(vals, index);
+        ValType valType = ValType.valueOf(kind);
+        if (valType == null) {
+            throw new IllegalArgumentException("unsupported kind " + kind);
+        }
+        return of(valType);
+    }
+
+    private static void writeRef(MemorySegment vals, long index, byte kind, Number value) {
+        KIND.set(vals, index, kind);
+        OF_REF.set(vals, index, MemoryAddress.ofLong(value == null ? 0 : value.longValue()));
+    }
+
+    private static Number readRef(MemorySegment vals, long index) {
+        return ((MemoryAddress) OF_REF.get(vals, index)).toRawLongValue();
+    }
+}
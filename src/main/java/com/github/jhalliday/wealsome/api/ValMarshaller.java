@@ -0,0 +1,113 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import jdk.incubator.foreign.SegmentAllocator;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+
+/**
+ * Moves values between Java and the ValVecs for one signature, i.e. one list of ValTypes, such as a function's params.
+ * The accessor for each position is resolved when the marshaller is created, not per value.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public final class ValMarshaller {
+
+    private static final Logger logger = Logger.getLogger(ValMarshaller.class);
+
+    private final List<ValType> valTypes;
+    private final ValCodec[] codecs;
+
+    private ValMarshaller(List<ValType> valTypes) {
+        this.valTypes = List.copyOf(valTypes);
+        codecs = ValCodec.of(this.valTypes);
+    }
+
+    public static ValMarshaller of(List<ValType> valTypes) {
+        return new ValMarshaller(valTypes);
+    }
+
+    public static ValMarshaller of(ValType... valTypes) {
+        return new ValMarshaller(List.of(valTypes));
+    }
+
+    public List<ValType> getValTypes() {
+        return valTypes;
+    }
+
+    /**
+     * @return a vec sized for this signature, with each value zero.
+     */
+    public ValVec newValVec(ResourceScope resourceScope) {
+        return newValVec(resourceScope, SegmentAllocator.ofScope(resourceScope));
+    }
+
+    /**
+     * @return a vec sized for this signature, with each value zero, valid until the arena is closed.
+     */
+    public ValVec newValVec(CallArena callArena) {
+        return newValVec(callArena.scope(), callArena);
+    }
+
+    private ValVec newValVec(ResourceScope resourceScope, SegmentAllocator segmentAllocator) {
+        ValVec valVec = new ValVec(resourceScope, segmentAllocator, codecs.length);
+        MemorySegment vals = valVec.vals();
+        for (int i = 0; i < codecs.length; i++) {
+            codecs[i].write(vals, i, 0);
+        }
+        return valVec;
+    }
+
+    /**
+     * Writes the values to the vec, each converted to the type for its position.
+     */
+    public void write(ValVec valVec, Number... values) {
+        if (values.length != codecs.length) {
+            throw new IllegalArgumentException("expected " + codecs.length + " values, not " + values.length);
+        }
+        MemorySegment vals = valVec.vals();
+        for (int i = 0; i < codecs.length; i++) {
+            codecs[i].write(vals, i, values[i]);
+        }
+    }
+
+    /**
+     * @return the values in the vec, each boxed as the type for its position.
+     */
+    public Number[] read(ValVec valVec) {
+        Number[] values = new Number[codecs.length];
+        read(valVec, values);
+        return values;
+    }
+
+    /**
+     * Reads the values in the vec into the given array, each boxed as the type for its position.
+     */
+    public void read(ValVec valVec, Number[] values) {
+        MemorySegment vals = valVec.vals();
+        for (int i = 0; i < codecs.length; i++) {
+            values[i] = codecs[i].read(vals, i);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ValMarshaller{" +
+                "valTypes=" + valTypes +
+                '}';
+    }
+}
@@ -44,6 +44,27 @@ public enum ValType {
         return null;
     }
 
+    /**
+     * @return true for the number types, i32, i64, f32 and f64.
+     */
+    public boolean isNumeric() {
+        return this == I32 || this == I64 || this == F32 || this == F64;
+    }
+
+    /**
+     * @return the wasm_valkind_t for this type, as found in wasm_val_t.kind
+     */
+    public byte kind() {
+        return (byte) cValue;
+    }
+
+    /**
+     * @return the type for the given wasm_valkind_t, or null if it is not one we support.
+     */
+    public static ValType valueOf(byte kind) {
+        return fromCNum(kind);
+    }
+
     public static ValType valueOf(MemoryAddress memoryAddress) {
         byte kind = WasmAPI.valtype_kind(memoryAddress);
         return fromCNum(kind);
@@ -18,6 +18,7 @@ import jdk.incubator.foreign.Addressable;
 import jdk.incubator.foreign.MemoryAddress;
 import jdk.incubator.foreign.MemorySegment;
 import jdk.incubator.foreign.ResourceScope;
+import jdk.incubator.foreign.SegmentAllocator;
 import org.jboss.logging.Logger;
 
 import java.util.List;
@@ -34,54 +35,71 @@ public class ValVec implements Addressable, AutoCloseable {
     private final ResourceScope resourceScope;
     public final MemorySegment val_vec_t;
     private final boolean shouldDelete;
+    // the wasm_val_t array, if this vec allocated it.
+    private final MemorySegment vals;
 
     public ValVec(ResourceScope resourceScope) {
         this.resourceScope = resourceScope;
         val_vec_t = wasm_val_vec_t.allocate(resourceScope);
         WasmAPI.val_vec_new_empty(this);
         shouldDelete = false; // nothing to do, it's empty
+        vals = null;
     }
 
     public ValVec(ResourceScope resourceScope, MemoryAddress memoryAddress) {
         this.resourceScope = resourceScope;
         val_vec_t = wasm_val_vec_t.ofAddress(memoryAddress, resourceScope);
         shouldDelete = false; // ?
+        vals = null;
     }
 
     public ValVec(ResourceScope resourceScope, List<UnVal> values) {
-        this.resourceScope = resourceScope;
-        val_vec_t = wasm_val_vec_t.allocate(resourceScope);
-        shouldDelete = false; // the memorySegment cleaner will handle it. Don't double-free!
+        this(resourceScope, SegmentAllocator.ofScope(resourceScope), values);
+    }
 
-        MemorySegment memorySegment = wasm_val_t.allocateArray(values.size(), resourceScope);
+    /**
+     * Creates the vec in the arena, valid until the arena is closed.
+     */
+    public ValVec(CallArena callArena, List<UnVal> values) {
+        this(callArena.scope(), callArena, values);
+    }
+
+    private ValVec(ResourceScope resourceScope, SegmentAllocator segmentAllocator, List<UnVal> values) {
+        this(resourceScope, segmentAllocator, values.size());
         for (int i = 0; i < values.size(); i++) {
             UnVal val = values.get(i);
-            wasm_val_t.kind$set(memorySegment, i, (byte) val.valType.ordinal());
-            MemorySegment slice = wasm_val_t.of$slice(memorySegment.asSlice(wasm_val_t.sizeof() * i));
-            wasm_val_t.of.i32$set(slice, (int) val.value);
+            ValCodec.of(val.valType).write(vals, i, val.value);
         }
-        wasm_val_vec_t.size$set(val_vec_t, values.size());
-        wasm_val_vec_t.data$set(val_vec_t, memorySegment.address());
+    }
+
+    /**
+     * Creates a vec of the given size, with the kind and value of each element still to be written.
+     */
+    ValVec(ResourceScope resourceScope, SegmentAllocator segmentAllocator, int size) {
+        this.resourceScope = resourceScope;
+        val_vec_t = wasm_val_vec_t.allocate(segmentAllocator);
+        shouldDelete = false; // the memorySegment cleaner will handle it. Don't double-free!
+
+        vals = wasm_val_t.allocateArray(size, segmentAllocator);
+        wasm_val_vec_t.size$set(val_vec_t, size);
+        wasm_val_vec_t.data$set(val_vec_t, vals.address());
     }
 
     public UnVal read(int index) {
-        MemoryAddress memoryAddress = wasm_val_vec_t.data$get(val_vec_t);
-        MemorySegment memorySegment = memoryAddress.asSegment(wasm_val_t.sizeof() * size(), resourceScope);
-        int t = wasm_val_t.kind$get(memorySegment, index);
-        ValType valType = ValType.values()[t]; // dirty
-        Number value = null;
-        MemorySegment slice = wasm_val_t.of$slice(memorySegment.asSlice(index * wasm_val_t.sizeof()));
-        switch (valType) {
-            // TODO others
-            case I32: {
-                value = wasm_val_t.of.i32$get(slice);
-                break;
-            }
-            case I64:
-                value = wasm_val_t.of.i64$get(slice);
-                break;
+        MemorySegment memorySegment = vals();
+        ValCodec valCodec = ValCodec.forKind(memorySegment, index);
+        return new UnVal(valCodec.valType, valCodec.read(memorySegment, index));
+    }
+
+    /**
+     * @return the wasm_val_t array of the vec.
+     */
+    MemorySegment vals() {
+        if (vals != null) {
+            return vals;
         }
-        return new UnVal(valType, value);
+        MemoryAddress memoryAddress = wasm_val_vec_t.data$get(val_vec_t);
+        return memoryAddress.asSegment(wasm_val_t.sizeof() * size(), resourceScope);
     }
 
     public long size() {
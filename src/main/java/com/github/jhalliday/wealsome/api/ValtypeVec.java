@@ -64,7 +64,7 @@ public class ValtypeVec implements Addressable, AutoCloseable {
             MemorySegment memorySegment = SegmentAllocator.ofScope(resourceScope).allocateArray(WasmAPI.pointerMemoryLayout, values.size());
             for (int i = 0; i < values.size(); i++) {
                 ValType valType = values.get(i);
-                MemoryAddress address = WasmAPI.valtype_new((byte) valType.ordinal()); // dirty tricks...
+                MemoryAddress address = WasmAPI.valtype_new(valType.kind());
                 WasmAPI.ptr$VH.set(memorySegment.asSlice(WasmAPI.pointerMemoryLayout.byteSize() * i), address);
             }
 
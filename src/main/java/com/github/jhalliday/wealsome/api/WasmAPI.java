@@ -16,6 +16,8 @@ import com.github.jhalliday.wealsome.generated.Wasm;
 import jdk.incubator.foreign.*;
 import org.jboss.logging.Logger;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
 import java.lang.invoke.VarHandle;
 
 /**
@@ -36,6 +38,17 @@ public class WasmAPI {
         return (MemoryAddress) ptr$VH.get(seg.asSlice(index * pointerMemoryLayout.byteSize()));
     }
 
+    /**
+     * Binds a function from the loaded native library directly, bypassing the jextract generated class.
+     *
+     * @throws UnsatisfiedLinkError if the library does not export the symbol.
+     */
+    public static MethodHandle downcallHandle(String name, MethodType methodType, FunctionDescriptor functionDescriptor) {
+        MemoryAddress symbol = SymbolLookup.loaderLookup().lookup(name)
+                .orElseThrow(() -> new UnsatisfiedLinkError("unresolved symbol: " + name));
+        return CLinker.getInstance().downcallHandle(symbol, methodType, functionDescriptor);
+    }
+
     ///////////////////////////////
 
     /**
@@ -1980,12 +1993,11 @@ public class WasmAPI {
 
     /**
      * wasm_trap_t* wasm_func_call(const wasm_func_t*, const wasm_val_vec_t* args, wasm_val_vec_t* results);
+     * <p>
+     * Hot path: bound through {@link HotCalls}, which only traces if selected at startup.
      */
     public static MemoryAddress func_call(Addressable x0, Addressable args, Addressable results) {
-        if (logger.isTraceEnabled()) {
-            logger.tracev("func_call(x0=" + x0 + ", args=" + args + ", results=" + results + ")");
-        }
-        return Wasm.wasm_func_call(x0, args, results);
+        return HotCalls.INSTANCE.func_call(x0, args, results);
     }
 
     /**
@@ -2110,22 +2122,20 @@ public class WasmAPI {
 
     /**
      * void wasm_global_get(const wasm_global_t*, wasm_val_t* out);
+     * <p>
+     * Hot path: bound through {@link HotCalls}, which only traces if selected at startup.
      */
     public static void global_get(Addressable x0, Addressable out) {
-        if (logger.isTraceEnabled()) {
-            logger.tracev("global_get(x0=" + x0 + ", out=" + out + ")");
-        }
-        Wasm.wasm_global_get(x0, out);
+        HotCalls.INSTANCE.global_get(x0, out);
     }
 
     /**
      * void wasm_global_set(wasm_global_t*, const wasm_val_t*);
+     * <p>
+     * Hot path: bound through {@link HotCalls}, which only traces if selected at startup.
      */
     public static void global_set(Addressable x0, Addressable x1) {
-        if (logger.isTraceEnabled()) {
-            logger.tracev("global_set(x0=" + x0 + ", x1=" + x1 + ")");
-        }
-        Wasm.wasm_global_set(x0, x1);
+        HotCalls.INSTANCE.global_set(x0, x1);
     }
 
     /**
@@ -2410,22 +2420,20 @@ public class WasmAPI {
 
     /**
      * byte_t* wasm_memory_data(wasm_memory_t*);
+     * <p>
+     * Hot path: bound through {@link HotCalls}, which only traces if selected at startup.
      */
     public static MemoryAddress memory_data(Addressable x0) {
-        if (logger.isTraceEnabled()) {
-            logger.tracev("memory_data(x0=" + x0 + ")");
-        }
-        return Wasm.wasm_memory_data(x0);
+        return HotCalls.INSTANCE.memory_data(x0);
     }
 
     /**
      * size_t wasm_memory_data_size(const wasm_memory_t*);
+     * <p>
+     * Hot path: bound through {@link HotCalls}, which only traces if selected at startup.
      */
     public static long memory_data_size(Addressable x0) {
-        if (logger.isTraceEnabled()) {
-            logger.tracev("memory_data_size(x0=" + x0 + ")");
-        }
-        return Wasm.wasm_memory_data_size(x0);
+        return HotCalls.INSTANCE.memory_data_size(x0);
     }
 
     /**
@@ -0,0 +1,120 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for the wasm lifecycle and calls, so that time spent in native wasm code
+ * can be correlated with GC, allocation and the rest of the JVM's activity, e.g. in Mission Control.
+ * <p>
+ * Modules are identified by a hash of the binary they were created from, see {@link Module#getHash()}.
+ * Each event type may be enabled and thresholded independently in the recording settings.
+ * When the recorder is off, the cost of an event is an allocation which the JIT removes and a flag check.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+final class WasmEvents {
+
+    private static final String CATEGORY = "WebAssembly";
+
+    private WasmEvents() {
+    }
+
+    @Name("wasm.Compile")
+    @Label("Wasm Compile")
+    @Category(CATEGORY)
+    static final class CompileEvent extends Event {
+        @Label("Module Hash")
+        String moduleHash;
+        @Label("Binary Size")
+        @DataAmount
+        long bytes;
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name("wasm.Deserialize")
+    @Label("Wasm Deserialize")
+    @Category(CATEGORY)
+    static final class DeserializeEvent extends Event {
+        @Label("Module Hash")
+        String moduleHash;
+        @Label("Artifact Size")
+        @DataAmount
+        long bytes;
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name("wasm.Instantiate")
+    @Label("Wasm Instantiate")
+    @Category(CATEGORY)
+    static final class InstantiateEvent extends Event {
+        @Label("Module Hash")
+        String moduleHash;
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name("wasm.Call")
+    @Label("Wasm Call")
+    @Description("A call from Java into an exported wasm function")
+    @Category(CATEGORY)
+    static final class CallEvent extends Event {
+        @Label("Module Hash")
+        String moduleHash;
+        @Label("Export Name")
+        String exportName;
+        @Label("Trapped")
+        boolean trapped;
+    }
+
+    @Name("wasm.HostCallback")
+    @Label("Wasm Host Callback")
+    @Description("A call from wasm into a Java host function")
+    @Category(CATEGORY)
+    static final class HostCallbackEvent extends Event {
+        @Label("Target")
+        String target;
+        @Label("Trapped")
+        boolean trapped;
+    }
+
+    @Name("wasm.Trap")
+    @Label("Wasm Trap")
+    @Category(CATEGORY)
+    static final class TrapEvent extends Event {
+        @Label("Message")
+        String message;
+        @Label("Raised By Host")
+        boolean host;
+    }
+
+    @Name("wasm.MemoryGrow")
+    @Label("Wasm Memory Grow")
+    @Category(CATEGORY)
+    static final class MemoryGrowEvent extends Event {
+        @Label("Delta Pages")
+        int deltaPages;
+        @Label("Pages")
+        int pages;
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.ResourceScope;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs calls to the exports of one module on a fixed set of worker threads.
+ * <p>
+ * The module is compiled once and distributed to the workers as a {@link SharedModule}.
+ * Each worker creates its own Store, obtains the module into it and instantiates it, then runs calls
+ * against that instance. Stores, and everything created in them, are only ever touched by their worker thread,
+ * as the C API requires. Calls are taken from a shared queue, so an idle worker picks up the next one.
+ * <p>
+ * The workers are platform threads and each call blocks its worker for the duration of the native call.
+ * Callers never make the native call themselves, so many lightweight caller threads can share a handful of Stores,
+ * with only the workers ever being held in native code. The {@link HandoffMode} sets how calls reach the workers.
+ * <p>
+ * A call may be given a deadline, after which its future fails with a {@link TrapException} that {@link TrapException#isTimeout()},
+ * so the caller can shed the work rather than wait. A call whose deadline passes while it is queued is never run.
+ * One that is already running is not interrupted: the wasm.h Store this library is built on exposes neither
+ * epoch interruption nor fuel, so the worker stays busy until the guest returns. So that a runaway guest does not
+ * take capacity away, the stuck worker is retired and a replacement, with its own Store and instance, started in its place.
+ * The retired worker releases its Store when the guest eventually returns. See {@link #getStuckWorkerCount()}.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class WasmExecutor implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(WasmExecutor.class);
+
+    public enum HandoffMode {
+        /**
+         * A blocking queue. Idle workers cost nothing, but each handoff to a waiting worker is a lock and an unpark.
+         */
+        BLOCKING,
+        /**
+         * A lock free queue, with idle workers spinning briefly before parking.
+         * Lower latency under steady load, at the cost of some CPU when the load is intermittent.
+         */
+        SPIN_THEN_PARK
+    }
+
+    private record Call(ExportIndex.Entry entry, Number[] args, CompletableFuture<Number[]> future,
+                        Duration timeout, long submitNanos) {
+    }
+
+    // tells a worker to stop. One is queued per worker on close.
+    private static final Call STOP = new Call(null, null, null, null, 0);
+
+    // marks a worker whose running call passed its deadline, so it stops once the call returns.
+    private static final Call RETIRED = new Call(null, null, null, null, 0);
+
+    // how long close waits on a worker between checks that it has not been retired meanwhile.
+    private static final long JOIN_POLL_MILLIS = 100;
+
+    private final class Worker {
+        private final Thread thread;
+        private final CompletableFuture<Void> started = new CompletableFuture<>();
+        // the call being run, null when idle, or RETIRED.
+        private final AtomicReference<Call> running = new AtomicReference<>();
+
+        Worker(int index) {
+            thread = new Thread(() -> work(this), "wasm-executor-" + index);
+            thread.setDaemon(true);
+        }
+
+        boolean isRetired() {
+            return running.get() == RETIRED;
+        }
+    }
+
+    // a single thread, shared by all executors, for failing calls that reach their deadline.
+    private static final ScheduledThreadPoolExecutor deadlineTicker = newDeadlineTicker();
+
+    private final Engine engine;
+    private final SharedModule sharedModule;
+    private final ExportIndex exportIndex;
+    private final ImportsFactory importsFactory;
+    private final Handoff<Call> queue;
+    private final int threads;
+    private final Set<Worker> workers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger workerIndex = new AtomicInteger();
+    private final AtomicInteger stuckWorkers = new AtomicInteger();
+    private volatile boolean closed;
+
+    public WasmExecutor(Engine engine, byte[] wasm, int threads) {
+        this(engine, wasm, threads, (store, resourceScope) -> new ExternVec(resourceScope));
+    }
+
+    public WasmExecutor(Engine engine, byte[] wasm, int threads, ImportsFactory importsFactory) {
+        this(engine, wasm, threads, importsFactory, HandoffMode.BLOCKING);
+    }
+
+    /**
+     * Compiles the module and starts the workers, returning once every worker has its instance.
+     *
+     * @param threads        the number of workers, and so of Stores and instances.
+     * @param importsFactory creates the imports for each worker's instance, which are closed when the worker stops.
+     * @param handoffMode    how calls are passed to the workers.
+     * @throws IllegalArgumentException if the module does not compile.
+     * @throws IllegalStateException    if a worker could not create its instance.
+     */
+    public WasmExecutor(Engine engine, byte[] wasm, int threads, ImportsFactory importsFactory, HandoffMode handoffMode) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("entry with {0}, {1}, {2}", engine, threads, handoffMode);
+        }
+
+        this.engine = engine;
+        this.importsFactory = importsFactory;
+        this.threads = threads;
+        queue = switch (handoffMode) {
+            case BLOCKING -> Handoff.blocking();
+            case SPIN_THEN_PARK -> new SpinParkHandoff<>(SpinParkHandoff.DEFAULT_SPINS);
+        };
+
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope();
+             Store store = engine.newStore()) {
+            ByteVec binary = new ByteVec(resourceScope, wasm);
+            Module module = new Module(store, binary);
+            binary.close();
+            if (MemoryAddress.NULL.equals(module.address())) {
+                throw new IllegalArgumentException("module compilation failed");
+            }
+            exportIndex = module.getExportIndex();
+            sharedModule = new SharedModule(module);
+            module.close();
+        }
+
+        CompletableFuture<?>[] started = new CompletableFuture<?>[threads];
+        for (int i = 0; i < threads; i++) {
+            started[i] = startWorker().started;
+        }
+        try {
+            CompletableFuture.allOf(started).join();
+        } catch (CompletionException e) {
+            close();
+            throw new IllegalStateException("worker failed to start", e.getCause());
+        }
+
+        if (logger.isTraceEnabled()) {
+            logger.tracev("exit {0}", this);
+        }
+    }
+
+    /**
+     * Queues a call to an exported function.
+     *
+     * @param args converted to the function's param types.
+     * @return completed with the results, boxed according to the function's result types,
+     * or exceptionally with a {@link TrapException} if the call traps.
+     * @throws IllegalArgumentException   if there is no such function, or the number of args is wrong.
+     * @throws RejectedExecutionException if the executor is closed.
+     */
+    public CompletableFuture<Number[]> submit(String exportName, Number... args) {
+        return submit(exportName, null, args);
+    }
+
+    /**
+     * Queues a call to an exported function, with a deadline.
+     *
+     * @param timeout measured from now. If it passes before the call completes, the future fails with a
+     *                {@link TrapException} that {@link TrapException#isTimeout()}. May be null, for no deadline.
+     * @see #submit(String, Number...)
+     */
+    public CompletableFuture<Number[]> submit(String exportName, Duration timeout, Number... args) {
+        ExportIndex.Entry entry = exportIndex.get(exportName);
+        if (entry == null || entry.kind() != ExternKind.WASM_EXTERN_FUNC) {
+            throw new IllegalArgumentException("no function export named " + exportName);
+        }
+        if (entry.params().size() != args.length) {
+            throw new IllegalArgumentException(exportName + " takes " + entry.params().size() + " args, not " + args.length);
+        }
+        if (closed) {
+            throw new RejectedExecutionException("executor is closed");
+        }
+
+        CompletableFuture<Number[]> future = new CompletableFuture<>();
+        Call call = new Call(entry, args, future, timeout, timeout != null ? System.nanoTime() : 0);
+        if (timeout != null) {
+            ScheduledFuture<?> timer = deadlineTicker.schedule(() -> expire(call), timeout.toNanos(), TimeUnit.NANOSECONDS);
+            future.whenComplete((results, throwable) -> timer.cancel(false));
+        }
+        queue.put(call);
+        return future;
+    }
+
+    // run by the deadline ticker.
+    private void expire(Call call) {
+        // retire the worker first, so that a caller who sees the timeout also sees the stuck worker counted.
+        for (Worker worker : workers) {
+            if (worker.running.compareAndSet(call, RETIRED)) {
+                stuckWorkers.incrementAndGet();
+                workers.remove(worker);
+                logger.warnv("call to {0} passed its {1} deadline while running, so {2} is retired and replaced",
+                        call.entry.name(), call.timeout, worker.thread.getName());
+                replaceWorker();
+                break;
+            }
+        }
+        call.future.completeExceptionally(TrapException.timeout(call.timeout));
+    }
+
+    private synchronized void replaceWorker() {
+        if (closed) {
+            return;
+        }
+        Worker worker = startWorker();
+        worker.started.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                logger.warnv(throwable, "replacement worker failed to start, leaving {0} of {1} workers",
+                        workers.size(), threads);
+            }
+        });
+    }
+
+    private Worker startWorker() {
+        Worker worker = new Worker(workerIndex.getAndIncrement());
+        workers.add(worker);
+        worker.thread.start();
+        return worker;
+    }
+
+    /**
+     * As {@link #submit(String, Number...)}, but waiting for the results.
+     * The caller waits by parking, not in native code, so this is cheap for lightweight caller threads.
+     *
+     * @throws TrapException if the call traps.
+     */
+    public Number[] call(String exportName, Number... args) {
+        try {
+            return submit(exportName, args).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    public ExportIndex getExportIndex() {
+        return exportIndex;
+    }
+
+    /**
+     * @return the number of workers taking calls, normally the number the executor was created with.
+     */
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    /**
+     * @return the number of workers retired because a call they were running passed its deadline,
+     * and still running it. Each holds a thread and a Store until the guest returns.
+     */
+    public int getStuckWorkerCount() {
+        return stuckWorkers.get();
+    }
+
+    private void work(Worker worker) {
+        CompletableFuture<Void> started = worker.started;
+        Store store = null;
+        Module module = null;
+        ResourceScope resourceScope = null;
+        ExternVec imports = null;
+        Instance instance;
+        try {
+            store = engine.newStore();
+            module = store.obtainModule(sharedModule);
+            resourceScope = ResourceScope.newConfinedScope();
+            imports = importsFactory.create(store, resourceScope);
+            instance = new Instance(store, module, imports);
+            if (MemoryAddress.NULL.equals(instance.address())) {
+                throw new IllegalStateException("instantiation failed");
+            }
+        } catch (RuntimeException e) {
+            if (imports != null) {
+                imports.close();
+            }
+            if (resourceScope != null) {
+                resourceScope.close();
+            }
+            if (module != null) {
+                module.close();
+            }
+            if (store != null) {
+                store.close();
+            }
+            workers.remove(worker);
+            started.completeExceptionally(e);
+            return;
+        }
+        started.complete(null);
+
+        try {
+            Call call;
+            while ((call = queue.take()) != STOP) {
+                if (call.timeout == null) {
+                    // only a call with a deadline can get its worker retired, so the others need no tracking.
+                    run(instance, call);
+                    continue;
+                }
+                worker.running.set(call);
+                run(instance, call);
+                if (!worker.running.compareAndSet(call, null)) {
+                    // the call overran its deadline, and a replacement has taken this worker's place.
+                    stuckWorkers.decrementAndGet();
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.remove(worker);
+            instance.close();
+            imports.close();
+            resourceScope.close();
+            module.close();
+            store.close();
+        }
+    }
+
+    private static void run(Instance instance, Call call) {
+        if (call.timeout != null && System.nanoTime() - call.submitNanos >= call.timeout.toNanos()) {
+            // shed it, without waiting for the ticker to get round to it.
+            call.future.completeExceptionally(TrapException.timeout(call.timeout));
+            return;
+        }
+        if (call.future.isDone()) {
+            return;
+        }
+        try {
+            ExportIndex.Entry entry = call.entry;
+            WasmFunc func = instance.func(entry.name());
+            int paramCount = entry.params().size();
+            int resultCount = entry.results().size();
+            CallSlots callSlots = CallSlots.current(Math.max(paramCount, resultCount));
+            for (int i = 0; i < paramCount; i++) {
+                callSlots.set(i, entry.params().get(i), call.args[i]);
+            }
+            func.callOrThrow(callSlots, paramCount, resultCount);
+            Number[] results = new Number[resultCount];
+            for (int i = 0; i < resultCount; i++) {
+                results[i] = callSlots.get(i, entry.results().get(i));
+            }
+            call.future.complete(results);
+        } catch (RuntimeException e) {
+            call.future.completeExceptionally(e);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newDeadlineTicker() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "wasm-executor-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Stops the workers once they have run the calls already queued, and releases the module.
+     * Stuck workers are not waited for: they release their Store when their call returns,
+     * so the engine must not be closed until {@link #getStuckWorkerCount()} is zero.
+     */
+    @Override
+    public void close() {
+        List<Worker> stopping;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            stopping = List.copyOf(workers);
+        }
+
+        for (int i = 0; i < stopping.size(); i++) {
+            queue.put(STOP);
+        }
+        for (Worker worker : stopping) {
+            try {
+                // a worker retired meanwhile will not take a STOP, and may never return, so is not waited for.
+                while (worker.thread.isAlive() && !worker.isRetired()) {
+                    worker.thread.join(JOIN_POLL_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // anything submitted concurrently with close may have missed the workers.
+        Call call;
+        while ((call = queue.poll()) != null) {
+            if (call != STOP) {
+                call.future.completeExceptionally(new RejectedExecutionException("executor is closed"));
+            }
+        }
+        sharedModule.close();
+    }
+
+    @Override
+    public String toString() {
+        return "WasmExecutor{" +
+                "engine=" + engine +
+                ", workers=" + workers.size() +
+                ", stuckWorkers=" + stuckWorkers.get() +
+                '}';
+    }
+}
@@ -14,9 +14,19 @@ package com.github.jhalliday.wealsome.api;
 
 import jdk.incubator.foreign.Addressable;
 import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.ResourceScope;
 import org.jboss.logging.Logger;
 
+import java.util.List;
+import java.util.function.*;
+
 /**
+ * A function exported by an instance, with typed and batched call paths.
+ * <p>
+ * Calls run on the caller's thread until the guest returns. There is no variant taking a deadline,
+ * since wasm.h offers no way to interrupt a running guest: for calls that may run away,
+ * use {@link WasmExecutor#submit(String, java.time.Duration, Number...)}, which sheds them and replaces the stuck worker.
+ *
  * @author Jonathan Halliday (jonathan.halliday@redhat.com)
  */
 public class WasmFunc implements Addressable {
@@ -24,13 +34,59 @@ public class WasmFunc implements Addressable {
     private static final Logger logger = Logger.getLogger(WasmFunc.class);
 
     private final MemoryAddress address;
+    private final String name;
+    private final String moduleHash;
 
     public WasmFunc(MemoryAddress address) {
+        this(address, null, null);
+    }
+
+    /**
+     * @param name       the export name, by which calls are reported to {@link WasmMetrics} and {@link WasmEvents}.
+     * @param moduleHash the {@link Module#getHash()} of the module exporting the function.
+     */
+    public WasmFunc(MemoryAddress address, String name, String moduleHash) {
         this.address = address;
+        this.name = name;
+        this.moduleHash = moduleHash;
     }
 
+    /**
+     * As {@link #tryApply(ValVec, ValVec)}, for callers that check {@link TrapResult#current()} themselves.
+     */
     public void apply(ValVec params, ValVec results) {
-        WasmAPI.func_call(address, params.address(), results.address());
+        tryApply(params, results);
+    }
+
+    /**
+     * Calls the function. A trap is not decoded, but held in the calling thread's {@link TrapResult#current()}
+     * until the next trap on the thread replaces it.
+     *
+     * @return true if the call completed, false if it trapped.
+     */
+    public boolean tryApply(ValVec params, ValVec results) {
+        MemoryAddress trapAddress;
+        WasmEvents.CallEvent callEvent = new WasmEvents.CallEvent();
+        if (!WasmMetrics.ENABLED && !callEvent.isEnabled()) {
+            trapAddress = WasmAPI.func_call(address, params.address(), results.address());
+        } else {
+            long start = System.nanoTime();
+            callEvent.begin();
+            trapAddress = WasmAPI.func_call(address, params.address(), results.address());
+            record(callEvent, start, !MemoryAddress.NULL.equals(trapAddress));
+        }
+        if (MemoryAddress.NULL.equals(trapAddress)) {
+            return true;
+        }
+        TrapResult.current().set(trapAddress);
+        return false;
+    }
+
+    /**
+     * @return the export name, if the function was obtained by name.
+     */
+    public String getName() {
+        return name == null ? WasmMetrics.UNNAMED : name;
     }
 
     public long getParamArity() {
@@ -41,6 +97,401 @@ public class WasmFunc implements Addressable {
         return WasmAPI.func_result_arity(address);
     }
 
+    /**
+     * @return the type of this function, owned by the caller, who should close it.
+     */
+    public FuncType getFuncType(ResourceScope resourceScope) {
+        return new FuncType(resourceScope, WasmAPI.func_type(address), true);
+    }
+
+    ///////////////////////////////
+
+    // Typed call paths. The signature is checked once, here, rather than per call,
+    // and each call marshals through the calling thread's preallocated CallSlots.
+    // A trap is reported by throwing TrapException.
+
+    /**
+     * @return an invoker for a function of type [] -> [i32]
+     */
+    public IntSupplier asIntSupplier() {
+        checkSignature(List.of(), List.of(ValType.I32));
+        return () -> {
+            CallSlots callSlots = CallSlots.current();
+            callOrThrow(callSlots, 0, 1);
+            return callSlots.getI32(0);
+        };
+    }
+
+    /**
+     * @return an invoker for a function of type [i32] -> [i32]
+     */
+    public IntUnaryOperator asIntUnaryOperator() {
+        checkSignature(List.of(ValType.I32), List.of(ValType.I32));
+        return operand -> {
+            CallSlots callSlots = CallSlots.current();
+            callSlots.setI32(0, operand);
+            callOrThrow(callSlots, 1, 1);
+            return callSlots.getI32(0);
+        };
+    }
+
+    /**
+     * @return an invoker for a function of type [i32 i32] -> [i32]
+     */
+    public IntBinaryOperator asIntBinaryOperator() {
+        checkSignature(List.of(ValType.I32, ValType.I32), List.of(ValType.I32));
+        return (left, right) -> {
+            CallSlots callSlots = CallSlots.current();
+            callSlots.setI32(0, left);
+            callSlots.setI32(1, right);
+            callOrThrow(callSlots, 2, 1);
+            return callSlots.getI32(0);
+        };
+    }
+
+    /**
+     * @return an invoker for a function of type [i64] -> [i64]
+     */
+    public LongUnaryOperator asLongUnaryOperator() {
+        checkSignature(List.of(ValType.I64), List.of(ValType.I64));
+        return operand -> {
+            CallSlots callSlots = CallSlots.current();
+            callSlots.setI64(0, operand);
+            callOrThrow(callSlots, 1, 1);
+            return callSlots.getI64(0);
+        };
+    }
+
+    /**
+     * @return an invoker for a function of type [i64 i64] -> [i64]
+     */
+    public LongBinaryOperator asLongBinaryOperator() {
+        checkSignature(List.of(ValType.I64, ValType.I64), List.of(ValType.I64));
+        return (left, right) -> {
+            CallSlots callSlots = CallSlots.current();
+            callSlots.setI64(0, left);
+            callSlots.setI64(1, right);
+            callOrThrow(callSlots, 2, 1);
+            return callSlots.getI64(0);
+        };
+    }
+
+    /**
+     * @return an invoker for a function of type [f64] -> [f64]
+     */
+    public DoubleUnaryOperator asDoubleUnaryOperator() {
+        checkSignature(List.of(ValType.F64), List.of(ValType.F64));
+        return operand -> {
+            CallSlots callSlots = CallSlots.current();
+            callSlots.setF64(0, operand);
+            callOrThrow(callSlots, 1, 1);
+            return callSlots.getF64(0);
+        };
+    }
+
+    /**
+     * @return an invoker for a function of type [f64 f64] -> [f64]
+     */
+    public DoubleBinaryOperator asDoubleBinaryOperator() {
+        checkSignature(List.of(ValType.F64, ValType.F64), List.of(ValType.F64));
+        return (left, right) -> {
+            CallSlots callSlots = CallSlots.current();
+            callSlots.setF64(0, left);
+            callSlots.setF64(1, right);
+            callOrThrow(callSlots, 2, 1);
+            return callSlots.getF64(0);
+        };
+    }
+
+    ///////////////////////////////
+
+    // Non-throwing typed call paths, for functions that trap often, e.g. to report validation failures.
+    // A trap is not decoded, but held in the calling thread's TrapResult, and the invoker returns valueOnTrap.
+    // Where valueOnTrap is also a possible result, clear the TrapResult first and check it afterwards.
+
+    /**
+     * @return an invoker for a function of type [] -> [i32], which returns valueOnTrap if the function traps.
+     */
+    public IntSupplier asIntSupplier(int valueOnTrap) {
+        checkSignature(List.of(), List.of(ValType.I32));
+        return () -> {
+            CallSlots callSlots = CallSlots.current();
+            return callOrHold(callSlots, 0, 1) ? callSlots.getI32(0) : valueOnTrap;
+        };
+    }
+
+    /**
+     * @return an invoker for a function of type [i32] -> [i32], which returns valueOnTrap if the function traps.
+     */
+    public IntUnaryOperator asIntUnaryOperator(int valueOnTrap) {
+        checkSignature(List.of(ValType.I32), List.of(ValType.I32));
+        return operand -> {
+            CallSlots callSlots = CallSlots.current();
+            callSlots.setI32(0, operand);
+            return callOrHold(callSlots, 1, 1) ? callSlots.getI32(0) : valueOnTrap;
+        };
+    }
+
+    /**
+     * @return an invoker for a function of type [i32 i32] -> [i32], which returns valueOnTrap if the function traps.
+     */
+    public IntBinaryOperator asIntBinaryOperator(int valueOnTrap) {
+        checkSignature(List.of(ValType.I32, ValType.I32), List.of(ValType.I32));
+        return (left, right) -> {
+            CallSlots callSlots = CallSlots.current();
+            callSlots.setI32(0, left);
+            callSlots.setI32(1, right);
+            return callOrHold(callSlots, 2, 1) ? callSlots.getI32(0) : valueOnTrap;
+        };
+    }
+
+    /**
+     * @return an invoker for a function of type [i64] -> [i64], which returns valueOnTrap if the function traps.
+     */
+    public LongUnaryOperator asLongUnaryOperator(long valueOnTrap) {
+        checkSignature(List.of(ValType.I64), List.of(ValType.I64));
+        return operand -> {
+            CallSlots callSlots = CallSlots.current();
+            callSlots.setI64(0, operand);
+            return callOrHold(callSlots, 1, 1) ? callSlots.getI64(0) : valueOnTrap;
+        };
+    }
+
+    /**
+     * @return an invoker for a function of type [i64 i64] -> [i64], which returns valueOnTrap if the function traps.
+     */
+    public LongBinaryOperator asLongBinaryOperator(long valueOnTrap) {
+        checkSignature(List.of(ValType.I64, ValType.I64), List.of(ValType.I64));
+        return (left, right) -> {
+            CallSlots callSlots = CallSlots.current();
+            callSlots.setI64(0, left);
+            callSlots.setI64(1, right);
+            return callOrHold(callSlots, 2, 1) ? callSlots.getI64(0) : valueOnTrap;
+        };
+    }
+
+    /**
+     * @return an invoker for a function of type [f64] -> [f64], which returns valueOnTrap if the function traps.
+     */
+    public DoubleUnaryOperator asDoubleUnaryOperator(double valueOnTrap) {
+        checkSignature(List.of(ValType.F64), List.of(ValType.F64));
+        return operand -> {
+            CallSlots callSlots = CallSlots.current();
+            callSlots.setF64(0, operand);
+            return callOrHold(callSlots, 1, 1) ? callSlots.getF64(0) : valueOnTrap;
+        };
+    }
+
+    /**
+     * @return an invoker for a function of type [f64 f64] -> [f64], which returns valueOnTrap if the function traps.
+     */
+    public DoubleBinaryOperator asDoubleBinaryOperator(double valueOnTrap) {
+        checkSignature(List.of(ValType.F64, ValType.F64), List.of(ValType.F64));
+        return (left, right) -> {
+            CallSlots callSlots = CallSlots.current();
+            callSlots.setF64(0, left);
+            callSlots.setF64(1, right);
+            return callOrHold(callSlots, 2, 1) ? callSlots.getF64(0) : valueOnTrap;
+        };
+    }
+
+    ///////////////////////////////
+
+    // Batched call paths, for calling the function over columns of inputs.
+    // Each call in the batch reuses the same CallSlots, so the setup is paid once per batch,
+    // and a trap is recorded in the BatchResult rather than aborting the remainder of the batch.
+
+    /**
+     * Calls a function of type [i32] -> [i32] once per element of the inputs.
+     */
+    public BatchResult applyBatch(int[] operands, int[] out) {
+        checkSignature(List.of(ValType.I32), List.of(ValType.I32));
+        checkLengths(out.length, operands.length);
+        CallSlots callSlots = CallSlots.current();
+        BatchResult batchResult = new BatchResult();
+        for (int i = 0; i < out.length; i++) {
+            callSlots.setI32(0, operands[i]);
+            MemoryAddress trapAddress = call(callSlots, 1, 1);
+            if (MemoryAddress.NULL.equals(trapAddress)) {
+                out[i] = callSlots.getI32(0);
+            } else {
+                batchResult.addTrap(i, trapAddress);
+            }
+        }
+        return batchResult;
+    }
+
+    /**
+     * Calls a function of type [i32 i32] -> [i32] once per element of the inputs.
+     */
+    public BatchResult applyBatch(int[] left, int[] right, int[] out) {
+        checkSignature(List.of(ValType.I32, ValType.I32), List.of(ValType.I32));
+        checkLengths(out.length, left.length, right.length);
+        CallSlots callSlots = CallSlots.current();
+        BatchResult batchResult = new BatchResult();
+        for (int i = 0; i < out.length; i++) {
+            callSlots.setI32(0, left[i]);
+            callSlots.setI32(1, right[i]);
+            MemoryAddress trapAddress = call(callSlots, 2, 1);
+            if (MemoryAddress.NULL.equals(trapAddress)) {
+                out[i] = callSlots.getI32(0);
+            } else {
+                batchResult.addTrap(i, trapAddress);
+            }
+        }
+        return batchResult;
+    }
+
+    /**
+     * Calls a function of type [i64] -> [i64] once per element of the inputs.
+     */
+    public BatchResult applyBatch(long[] operands, long[] out) {
+        checkSignature(List.of(ValType.I64), List.of(ValType.I64));
+        checkLengths(out.length, operands.length);
+        CallSlots callSlots = CallSlots.current();
+        BatchResult batchResult = new BatchResult();
+        for (int i = 0; i < out.length; i++) {
+            callSlots.setI64(0, operands[i]);
+            MemoryAddress trapAddress = call(callSlots, 1, 1);
+            if (MemoryAddress.NULL.equals(trapAddress)) {
+                out[i] = callSlots.getI64(0);
+            } else {
+                batchResult.addTrap(i, trapAddress);
+            }
+        }
+        return batchResult;
+    }
+
+    /**
+     * Calls a function of type [i64 i64] -> [i64] once per element of the inputs.
+     */
+    public BatchResult applyBatch(long[] left, long[] right, long[] out) {
+        checkSignature(List.of(ValType.I64, ValType.I64), List.of(ValType.I64));
+        checkLengths(out.length, left.length, right.length);
+        CallSlots callSlots = CallSlots.current();
+        BatchResult batchResult = new BatchResult();
+        for (int i = 0; i < out.length; i++) {
+            callSlots.setI64(0, left[i]);
+            callSlots.setI64(1, right[i]);
+            MemoryAddress trapAddress = call(callSlots, 2, 1);
+            if (MemoryAddress.NULL.equals(trapAddress)) {
+                out[i] = callSlots.getI64(0);
+            } else {
+                batchResult.addTrap(i, trapAddress);
+            }
+        }
+        return batchResult;
+    }
+
+    /**
+     * Calls a function of type [f64] -> [f64] once per element of the inputs.
+     */
+    public BatchResult applyBatch(double[] operands, double[] out) {
+        checkSignature(List.of(ValType.F64), List.of(ValType.F64));
+        checkLengths(out.length, operands.length);
+        CallSlots callSlots = CallSlots.current();
+        BatchResult batchResult = new BatchResult();
+        for (int i = 0; i < out.length; i++) {
+            callSlots.setF64(0, operands[i]);
+            MemoryAddress trapAddress = call(callSlots, 1, 1);
+            if (MemoryAddress.NULL.equals(trapAddress)) {
+                out[i] = callSlots.getF64(0);
+            } else {
+                batchResult.addTrap(i, trapAddress);
+            }
+        }
+        return batchResult;
+    }
+
+    /**
+     * Calls a function of type [f64 f64] -> [f64] once per element of the inputs.
+     */
+    public BatchResult applyBatch(double[] left, double[] right, double[] out) {
+        checkSignature(List.of(ValType.F64, ValType.F64), List.of(ValType.F64));
+        checkLengths(out.length, left.length, right.length);
+        CallSlots callSlots = CallSlots.current();
+        BatchResult batchResult = new BatchResult();
+        for (int i = 0; i < out.length; i++) {
+            callSlots.setF64(0, left[i]);
+            callSlots.setF64(1, right[i]);
+            MemoryAddress trapAddress = call(callSlots, 2, 1);
+            if (MemoryAddress.NULL.equals(trapAddress)) {
+                out[i] = callSlots.getF64(0);
+            } else {
+                batchResult.addTrap(i, trapAddress);
+            }
+        }
+        return batchResult;
+    }
+
+    /**
+     * Calls the function with the params already in the slots, recording the call in {@link WasmMetrics}
+     * and {@link WasmEvents} if they are enabled.
+     *
+     * @return the wasm_trap_t* from the call, which is NULL on success and owned by the caller otherwise.
+     */
+    MemoryAddress call(CallSlots callSlots, int paramCount, int resultCount) {
+        WasmEvents.CallEvent callEvent = new WasmEvents.CallEvent();
+        if (!WasmMetrics.ENABLED && !callEvent.isEnabled()) {
+            return callSlots.call(address, paramCount, resultCount);
+        }
+        long start = System.nanoTime();
+        callEvent.begin();
+        MemoryAddress trapAddress = callSlots.call(address, paramCount, resultCount);
+        record(callEvent, start, !MemoryAddress.NULL.equals(trapAddress));
+        return trapAddress;
+    }
+
+    void callOrThrow(CallSlots callSlots, int paramCount, int resultCount) {
+        MemoryAddress trapAddress = call(callSlots, paramCount, resultCount);
+        if (!MemoryAddress.NULL.equals(trapAddress)) {
+            throw TrapException.of(trapAddress);
+        }
+    }
+
+    /**
+     * @return true if the call completed, false if it trapped, in which case the trap is held in {@link TrapResult#current()}.
+     */
+    private boolean callOrHold(CallSlots callSlots, int paramCount, int resultCount) {
+        MemoryAddress trapAddress = call(callSlots, paramCount, resultCount);
+        if (MemoryAddress.NULL.equals(trapAddress)) {
+            return true;
+        }
+        TrapResult.current().set(trapAddress);
+        return false;
+    }
+
+    private void record(WasmEvents.CallEvent callEvent, long start, boolean trapped) {
+        long nanos = System.nanoTime() - start;
+        callEvent.end();
+        if (callEvent.shouldCommit()) {
+            callEvent.moduleHash = moduleHash;
+            callEvent.exportName = getName();
+            callEvent.trapped = trapped;
+            callEvent.commit();
+        }
+        if (WasmMetrics.ENABLED) {
+            WasmMetrics.getSink().call(getName(), nanos, trapped);
+        }
+    }
+
+    private static void checkLengths(int expected, int... lengths) {
+        for (int length : lengths) {
+            if (length != expected) {
+                throw new IllegalArgumentException("input and output arrays must all be the same length");
+            }
+        }
+    }
+
+    private void checkSignature(List<ValType> params, List<ValType> results) {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope();
+             FuncType funcType = getFuncType(resourceScope)) {
+            if (!funcType.matches(params, results)) {
+                throw new IllegalArgumentException("function type is not " + params + " -> " + results);
+            }
+        }
+    }
+
     @Override
     public MemoryAddress address() {
         return address;
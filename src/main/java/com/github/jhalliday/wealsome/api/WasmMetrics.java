@@ -0,0 +1,42 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+/**
+ * Opt-in instrumentation of calls, instantiation, compilation, host callbacks and memory copies.
+ * <p>
+ * Metrics are enabled by starting the JVM with -Dwealsome.metrics=true. The flag is a constant,
+ * so when it is off the JIT removes the instrumentation entirely and it costs nothing.
+ * When it is on, measurements go to the current {@link MetricsSink}, by default a {@link HistogramMetricsSink}.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public final class WasmMetrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("wealsome.metrics");
+
+    static final String UNNAMED = "<unnamed>";
+
+    private static volatile MetricsSink sink = new HistogramMetricsSink();
+
+    private WasmMetrics() {
+    }
+
+    public static MetricsSink getSink() {
+        return sink;
+    }
+
+    public static void setSink(MetricsSink sink) {
+        WasmMetrics.sink = sink;
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import com.github.jhalliday.wealsome.generated.wasm_byte_vec_t;
+import jdk.incubator.foreign.*;
+import org.jboss.logging.Logger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+
+import static jdk.incubator.foreign.CLinker.*;
+
+/**
+ * The wasmtime specific extensions to the C API, from wasmtime.h, which jextract does not generate for us from wasm.h
+ * <p>
+ * These are bound directly from the native library when this class is first used.
+ * Those not present in all wasmtime versions are bound optionally, and throw UnsupportedOperationException if absent.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ * @see <a href="https://docs.wasmtime.dev/c-api/config_8h.html">config.h</a>
+ */
+public class WasmtimeAPI {
+
+    private static final Logger logger = Logger.getLogger(WasmtimeAPI.class);
+
+    private static final MethodHandle wasmtime_config_debug_info_set = WasmAPI.downcallHandle("wasmtime_config_debug_info_set",
+            MethodType.methodType(void.class, MemoryAddress.class, byte.class),
+            FunctionDescriptor.ofVoid(C_POINTER, C_CHAR));
+
+    // the size_t and uint64_t params below are bound as C_LONG_LONG, since C_LONG is 32 bits on Windows.
+    private static final MethodHandle wasmtime_config_max_wasm_stack_set = WasmAPI.downcallHandle("wasmtime_config_max_wasm_stack_set",
+            MethodType.methodType(void.class, MemoryAddress.class, long.class),
+            FunctionDescriptor.ofVoid(C_POINTER, C_LONG_LONG));
+
+    private static final MethodHandle wasmtime_config_cranelift_opt_level_set = WasmAPI.downcallHandle("wasmtime_config_cranelift_opt_level_set",
+            MethodType.methodType(void.class, MemoryAddress.class, byte.class),
+            FunctionDescriptor.ofVoid(C_POINTER, C_CHAR));
+
+    private static final MethodHandle wasmtime_config_static_memory_maximum_size_set = WasmAPI.downcallHandle("wasmtime_config_static_memory_maximum_size_set",
+            MethodType.methodType(void.class, MemoryAddress.class, long.class),
+            FunctionDescriptor.ofVoid(C_POINTER, C_LONG_LONG));
+
+    private static final MethodHandle wasmtime_config_static_memory_guard_size_set = WasmAPI.downcallHandle("wasmtime_config_static_memory_guard_size_set",
+            MethodType.methodType(void.class, MemoryAddress.class, long.class),
+            FunctionDescriptor.ofVoid(C_POINTER, C_LONG_LONG));
+
+    private static final MethodHandle wasmtime_config_dynamic_memory_guard_size_set = WasmAPI.downcallHandle("wasmtime_config_dynamic_memory_guard_size_set",
+            MethodType.methodType(void.class, MemoryAddress.class, long.class),
+            FunctionDescriptor.ofVoid(C_POINTER, C_LONG_LONG));
+
+    private static final MethodHandle wasmtime_config_cache_config_load = WasmAPI.downcallHandle("wasmtime_config_cache_config_load",
+            MethodType.methodType(MemoryAddress.class, MemoryAddress.class, MemoryAddress.class),
+            FunctionDescriptor.of(C_POINTER, C_POINTER, C_POINTER));
+
+    private static final MethodHandle wasmtime_config_parallel_compilation_set = optionalDowncallHandle("wasmtime_config_parallel_compilation_set",
+            MethodType.methodType(void.class, MemoryAddress.class, byte.class),
+            FunctionDescriptor.ofVoid(C_POINTER, C_CHAR));
+
+    private static final MethodHandle wasmtime_frame_func_name = optionalDowncallHandle("wasmtime_frame_func_name",
+            MethodType.methodType(MemoryAddress.class, MemoryAddress.class),
+            FunctionDescriptor.of(C_POINTER, C_POINTER));
+
+    private static final MethodHandle wasmtime_frame_module_name = optionalDowncallHandle("wasmtime_frame_module_name",
+            MethodType.methodType(MemoryAddress.class, MemoryAddress.class),
+            FunctionDescriptor.of(C_POINTER, C_POINTER));
+
+    private static final MethodHandle wasmtime_trap_code = optionalDowncallHandle("wasmtime_trap_code",
+            MethodType.methodType(byte.class, MemoryAddress.class, MemoryAddress.class),
+            FunctionDescriptor.of(C_CHAR, C_POINTER, C_POINTER));
+
+    private static final MethodHandle wasmtime_error_delete = WasmAPI.downcallHandle("wasmtime_error_delete",
+            MethodType.methodType(void.class, MemoryAddress.class),
+            FunctionDescriptor.ofVoid(C_POINTER));
+
+    private static final MethodHandle wasmtime_error_message = WasmAPI.downcallHandle("wasmtime_error_message",
+            MethodType.methodType(void.class, MemoryAddress.class, MemoryAddress.class),
+            FunctionDescriptor.ofVoid(C_POINTER, C_POINTER));
+
+    private static MethodHandle optionalDowncallHandle(String name, MethodType methodType, FunctionDescriptor functionDescriptor) {
+        if (!isAvailable(name)) {
+            logger.debugv("{0} not available", name);
+            return null;
+        }
+        return WasmAPI.downcallHandle(name, methodType, functionDescriptor);
+    }
+
+    /**
+     * @return true if the loaded native library provides the named function.
+     */
+    public static boolean isAvailable(String name) {
+        return SymbolLookup.loaderLookup().lookup(name).isPresent();
+    }
+
+    /**
+     * Reads the message from a wasmtime_error_t and then deletes it.
+     *
+     * @return null if there was no error, i.e. the error is NULL.
+     */
+    public static String consumeError(MemoryAddress error) {
+        if (MemoryAddress.NULL.equals(error)) {
+            return null;
+        }
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ByteVec message = new ByteVec(resourceScope, wasm_byte_vec_t.allocate(resourceScope));
+            error_message(error, message);
+            String text = message.asString();
+            message.close();
+            return text;
+        } finally {
+            error_delete(error);
+        }
+    }
+
+    ///////////////////////////////
+
+    /**
+     * void wasmtime_config_debug_info_set(wasm_config_t*, bool);
+     */
+    public static void config_debug_info_set(Addressable x0, byte x1) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("config_debug_info_set(x0=" + x0 + ", x1=" + x1 + ")");
+        }
+        try {
+            wasmtime_config_debug_info_set.invokeExact(x0.address(), x1);
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    /**
+     * void wasmtime_config_max_wasm_stack_set(wasm_config_t*, size_t);
+     */
+    public static void config_max_wasm_stack_set(Addressable x0, long x1) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("config_max_wasm_stack_set(x0=" + x0 + ", x1=" + x1 + ")");
+        }
+        try {
+            wasmtime_config_max_wasm_stack_set.invokeExact(x0.address(), x1);
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    /**
+     * void wasmtime_config_cranelift_opt_level_set(wasm_config_t*, wasmtime_opt_level_t);
+     */
+    public static void config_cranelift_opt_level_set(Addressable x0, byte x1) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("config_cranelift_opt_level_set(x0=" + x0 + ", x1=" + x1 + ")");
+        }
+        try {
+            wasmtime_config_cranelift_opt_level_set.invokeExact(x0.address(), x1);
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    /**
+     * void wasmtime_config_static_memory_maximum_size_set(wasm_config_t*, uint64_t);
+     */
+    public static void config_static_memory_maximum_size_set(Addressable x0, long x1) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("config_static_memory_maximum_size_set(x0=" + x0 + ", x1=" + x1 + ")");
+        }
+        try {
+            wasmtime_config_static_memory_maximum_size_set.invokeExact(x0.address(), x1);
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    /**
+     * void wasmtime_config_static_memory_guard_size_set(wasm_config_t*, uint64_t);
+     */
+    public static void config_static_memory_guard_size_set(Addressable x0, long x1) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("config_static_memory_guard_size_set(x0=" + x0 + ", x1=" + x1 + ")");
+        }
+        try {
+            wasmtime_config_static_memory_guard_size_set.invokeExact(x0.address(), x1);
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    /**
+     * void wasmtime_config_dynamic_memory_guard_size_set(wasm_config_t*, uint64_t);
+     */
+    public static void config_dynamic_memory_guard_size_set(Addressable x0, long x1) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("config_dynamic_memory_guard_size_set(x0=" + x0 + ", x1=" + x1 + ")");
+        }
+        try {
+            wasmtime_config_dynamic_memory_guard_size_set.invokeExact(x0.address(), x1);
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    /**
+     * wasmtime_error_t* wasmtime_config_cache_config_load(wasm_config_t*, const char*);
+     */
+    public static MemoryAddress config_cache_config_load(Addressable x0, Addressable x1) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("config_cache_config_load(x0=" + x0 + ", x1=" + x1 + ")");
+        }
+        try {
+            return (MemoryAddress) wasmtime_config_cache_config_load.invokeExact(x0.address(), x1.address());
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    /**
+     * void wasmtime_config_parallel_compilation_set(wasm_config_t*, bool);
+     * <p>
+     * Not available in all wasmtime versions, see {@link #isAvailable(String)}.
+     */
+    public static void config_parallel_compilation_set(Addressable x0, byte x1) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("config_parallel_compilation_set(x0=" + x0 + ", x1=" + x1 + ")");
+        }
+        if (wasmtime_config_parallel_compilation_set == null) {
+            throw new UnsupportedOperationException("wasmtime_config_parallel_compilation_set is not available in this wasmtime version");
+        }
+        try {
+            wasmtime_config_parallel_compilation_set.invokeExact(x0.address(), x1);
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    /**
+     * const wasm_name_t *wasmtime_frame_func_name(const wasm_frame_t*);
+     * <p>
+     * Not available in all wasmtime versions, see {@link #isAvailable(String)}.
+     *
+     * @return the name from the module's name section, owned by the frame, or NULL if it has none.
+     */
+    public static MemoryAddress frame_func_name(Addressable x0) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("frame_func_name(x0=" + x0 + ")");
+        }
+        if (wasmtime_frame_func_name == null) {
+            throw new UnsupportedOperationException("wasmtime_frame_func_name is not available in this wasmtime version");
+        }
+        try {
+            return (MemoryAddress) wasmtime_frame_func_name.invokeExact(x0.address());
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    /**
+     * const wasm_name_t *wasmtime_frame_module_name(const wasm_frame_t*);
+     * <p>
+     * Not available in all wasmtime versions, see {@link #isAvailable(String)}.
+     *
+     * @return the module's name from its name section, owned by the frame, or NULL if it has none.
+     */
+    public static MemoryAddress frame_module_name(Addressable x0) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("frame_module_name(x0=" + x0 + ")");
+        }
+        if (wasmtime_frame_module_name == null) {
+            throw new UnsupportedOperationException("wasmtime_frame_module_name is not available in this wasmtime version");
+        }
+        try {
+            return (MemoryAddress) wasmtime_frame_module_name.invokeExact(x0.address());
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    /**
+     * bool wasmtime_trap_code(const wasm_trap_t*, wasmtime_trap_code_t *code);
+     * <p>
+     * Not available in all wasmtime versions, see {@link #isAvailable(String)}.
+     */
+    public static byte trap_code(Addressable x0, Addressable code) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("trap_code(x0=" + x0 + ", code=" + code + ")");
+        }
+        if (wasmtime_trap_code == null) {
+            throw new UnsupportedOperationException("wasmtime_trap_code is not available in this wasmtime version");
+        }
+        try {
+            return (byte) wasmtime_trap_code.invokeExact(x0.address(), code.address());
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    /**
+     * void wasmtime_error_delete(wasmtime_error_t*);
+     */
+    public static void error_delete(Addressable x0) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("error_delete(x0=" + x0 + ")");
+        }
+        try {
+            wasmtime_error_delete.invokeExact(x0.address());
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+
+    /**
+     * void wasmtime_error_message(const wasmtime_error_t*, wasm_name_t*);
+     */
+    public static void error_message(Addressable x0, Addressable out) {
+        if (logger.isTraceEnabled()) {
+            logger.tracev("error_message(x0=" + x0 + ", out=" + out + ")");
+        }
+        try {
+            wasmtime_error_message.invokeExact(x0.address(), out.address());
+        } catch (Throwable throwable) {
+            throw new AssertionError("should not reach here", throwable);
+        }
+    }
+}
@@ -116,7 +116,7 @@ public class Callback {
             UnVal val = new UnVal(ValType.I32, 42);
 
             MemorySegment valSegment = wasm_val_t.ofAddress(wasm_val_vec_t.data$get(val_vec_t), resourceScope);
-            wasm_val_t.kind$set(valSegment, (byte) val.valType.ordinal());
+            wasm_val_t.kind$set(valSegment, val.valType.kind());
             MemorySegment slice = wasm_val_t.of$slice(valSegment);
             wasm_val_t.of.i32$set(slice, (int) val.value);
 
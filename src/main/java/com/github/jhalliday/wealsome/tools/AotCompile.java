@@ -0,0 +1,121 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.tools;
+
+import com.github.jhalliday.wealsome.api.Module;
+import com.github.jhalliday.wealsome.api.*;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.ResourceScope;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compiles .wasm files ahead of time into {@link AotArtifact} files, for loading at startup without compiling.
+ * <pre>
+ * AotCompile [options] file.wasm...
+ *   --output dir                          where to write the .wsaot files (default: alongside the inputs)
+ *   --opt-level none|speed|speed_and_size
+ *   --debug-info
+ *   --max-wasm-stack bytes
+ *   --static-memory-maximum-size bytes
+ *   --static-memory-guard-size bytes
+ *   --dynamic-memory-guard-size bytes
+ * </pre>
+ * The options must match the {@link EngineConfig} the artifacts will be loaded with, or loading will reject them.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class AotCompile {
+
+    public static void main(String[] args) throws IOException {
+        EngineConfig.Builder builder = EngineConfig.builder();
+        Path output = null;
+        List<Path> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--output" -> output = Path.of(value(args, ++i));
+                    case "--opt-level" -> builder.optLevel(EngineConfig.OptLevel.valueOf(value(args, ++i).toUpperCase(Locale.ROOT)));
+                    case "--debug-info" -> builder.debugInfo(true);
+                    case "--max-wasm-stack" -> builder.maxWasmStack(Long.parseLong(value(args, ++i)));
+                    case "--static-memory-maximum-size" -> builder.staticMemoryMaximumSize(Long.parseLong(value(args, ++i)));
+                    case "--static-memory-guard-size" -> builder.staticMemoryGuardSize(Long.parseLong(value(args, ++i)));
+                    case "--dynamic-memory-guard-size" -> builder.dynamicMemoryGuardSize(Long.parseLong(value(args, ++i)));
+                    default -> {
+                        if (args[i].startsWith("--")) {
+                            System.err.println("unknown option " + args[i]);
+                            usage();
+                        }
+                        inputs.add(Path.of(args[i]));
+                    }
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // a malformed number or an unknown opt level.
+            System.err.println(e.getMessage());
+            usage();
+        }
+        if (inputs.isEmpty()) {
+            usage();
+        }
+
+        System.loadLibrary("wasmtime");
+
+        int failures = 0;
+        try (Engine engine = new Engine(builder.build());
+             Store store = engine.newStore()) {
+            if (output != null) {
+                Files.createDirectories(output);
+            }
+            for (Path input : inputs) {
+                String name = input.getFileName().toString().replaceFirst("\\.wasm$", "") + AotArtifact.SUFFIX;
+                Path target = output != null ? output.resolve(name) : input.resolveSibling(name);
+                long start = System.nanoTime();
+                try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+                    ByteVec binary = ByteVec.mapFile(resourceScope, input);
+                    Module module = new Module(store, binary);
+                    if (MemoryAddress.NULL.equals(module.address())) {
+                        System.err.println(input + ": compilation failed");
+                        failures++;
+                        continue;
+                    }
+                    AotArtifact.write(engine, module, Module.hash(binary.asSegment().asByteBuffer()), target);
+                    module.close();
+                }
+                System.out.printf("%s -> %s (%d ms)%n", input, target, (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+        if (failures != 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            System.err.println(args[i - 1] + " needs a value");
+            usage();
+        }
+        return args[i];
+    }
+
+    private static void usage() {
+        System.err.println("usage: AotCompile [options] file.wasm...");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class CallArenaTest {
+
+    @Test
+    public void closeRewinds() {
+        long first;
+        try (CallArena callArena = CallArena.acquire()) {
+            first = address(callArena.allocate(100));
+            assertEquals(first + 104, address(callArena.allocate(8, 8)));
+        }
+        try (CallArena callArena = CallArena.acquire()) {
+            assertEquals(first, address(callArena.allocate(100)));
+        }
+    }
+
+    @Test
+    public void acquisitionsNest() {
+        try (CallArena outer = CallArena.acquire()) {
+            MemorySegment kept = outer.allocate(16);
+            kept.fill((byte) 1);
+            long innerStart;
+            try (CallArena inner = CallArena.acquire()) {
+                assertSame(outer, inner);
+                innerStart = address(inner.allocate(32));
+                // deeper than the initial capacity for marks.
+                for (int i = 0; i < 10; i++) {
+                    CallArena.acquire().allocate(8);
+                }
+                for (int i = 0; i < 10; i++) {
+                    inner.close();
+                }
+            }
+            assertEquals(innerStart, address(outer.allocate(32)));
+            assertEquals(1, MemoryAccess.getByteAtOffset(kept, 15));
+        }
+    }
+
+    @Test
+    public void aligns() {
+        try (CallArena callArena = CallArena.acquire()) {
+            callArena.allocate(1, 1);
+            assertEquals(0, address(callArena.allocate(8, 64)) % 64);
+            callArena.allocate(3, 1);
+            assertEquals(0, address(callArena.allocate(4, 4)) % 4);
+        }
+    }
+
+    @Test
+    public void overflowIsReleasedAndTheSlabGrown() {
+        long size = CallArena.DEFAULT_SLAB_SIZE * 3;
+        MemorySegment overflow;
+        try (CallArena callArena = CallArena.acquire()) {
+            overflow = callArena.allocate(size);
+            assertEquals(size, overflow.byteSize());
+            assertNotSame(callArena.scope(), overflow.scope());
+            overflow.fill((byte) 1);
+        }
+        assertFalse(overflow.scope().isAlive());
+
+        try (CallArena callArena = CallArena.acquire()) {
+            MemorySegment fits = callArena.allocate(size);
+            assertSame(callArena.scope(), fits.scope());
+        }
+    }
+
+    @Test
+    public void mustBeAcquired() {
+        CallArena callArena;
+        try (CallArena acquired = CallArena.acquire()) {
+            callArena = acquired;
+        }
+        assertThrows(IllegalStateException.class, () -> callArena.allocate(8));
+        assertThrows(IllegalStateException.class, callArena::close);
+    }
+
+    @Test
+    public void perThread() throws Exception {
+        CallArena other = CompletableFuture.supplyAsync(() -> {
+            try (CallArena callArena = CallArena.acquire()) {
+                return callArena;
+            }
+        }).get();
+        try (CallArena callArena = CallArena.acquire()) {
+            assertNotSame(other, callArena);
+        }
+    }
+
+    private static long address(MemorySegment memorySegment) {
+        return memorySegment.address().toRawLongValue();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.ResourceScope;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Needs the wasm native library, see the surefire configuration in the pom.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class ExportIndexTest {
+
+    /*
+     * (module
+     *   (func (export "add") (param i32 i32) (result i32) local.get 0 local.get 1 i32.add)
+     *   (memory (export "mem") 1)
+     *   (global (export "g") (mut i32) (i32.const 42)))
+     */
+    private static final byte[] WASM = {
+            0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00,
+            0x01, 0x07, 0x01, 0x60, 0x02, 0x7f, 0x7f, 0x01, 0x7f,
+            0x03, 0x02, 0x01, 0x00,
+            0x05, 0x03, 0x01, 0x00, 0x01,
+            0x06, 0x06, 0x01, 0x7f, 0x01, 0x41, 0x2a, 0x0b,
+            0x07, 0x11, 0x03,
+            0x03, 0x61, 0x64, 0x64, 0x00, 0x00,
+            0x03, 0x6d, 0x65, 0x6d, 0x02, 0x00,
+            0x01, 0x67, 0x03, 0x00,
+            0x0a, 0x09, 0x01, 0x07, 0x00, 0x20, 0x00, 0x20, 0x01, 0x6a, 0x0b
+    };
+
+    @BeforeAll
+    public static void loadLibrary() {
+        System.loadLibrary("wasmtime");
+    }
+
+    @Test
+    public void indexesExports() {
+        try (Engine engine = new Engine();
+             Store store = engine.newStore();
+             Module module = compile(store, WASM)) {
+            ExportIndex exportIndex = module.getExportIndex();
+            assertSame(exportIndex, module.getExportIndex());
+            assertEquals(3, exportIndex.size());
+            assertEquals(List.of("add", "mem", "g"), exportIndex.entries().stream().map(ExportIndex.Entry::name).toList());
+
+            ExportIndex.Entry add = exportIndex.get("add");
+            assertEquals(0, add.position());
+            assertEquals(ExternKind.WASM_EXTERN_FUNC, add.kind());
+            assertEquals(List.of(ValType.I32, ValType.I32), add.params());
+            assertEquals(List.of(ValType.I32), add.results());
+
+            ExportIndex.Entry mem = exportIndex.get("mem");
+            assertEquals(1, mem.position());
+            assertEquals(ExternKind.WASM_EXTERN_MEMORY, mem.kind());
+            assertTrue(mem.params().isEmpty());
+            assertTrue(mem.results().isEmpty());
+
+            ExportIndex.Entry g = exportIndex.get("g");
+            assertEquals(2, g.position());
+            assertEquals(ExternKind.WASM_EXTERN_GLOBAL, g.kind());
+
+            assertNull(exportIndex.get("missing"));
+        }
+    }
+
+    @Test
+    public void noIndexForAFailedModule() {
+        try (Engine engine = new Engine();
+             Store store = engine.newStore()) {
+            Module module = compile(store, new byte[]{0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00, 0x7f});
+            assertNull(module.getExportIndex());
+        }
+    }
+
+    private static Module compile(Store store, byte[] wasm) {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope();
+             ByteVec binary = new ByteVec(resourceScope, wasm)) {
+            return new Module(store, binary);
+        }
+    }
+}
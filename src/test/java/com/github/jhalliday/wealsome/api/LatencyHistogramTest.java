@@ -0,0 +1,85 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        for (long value = 0; value < 2 * LatencyHistogram.SUB_BUCKETS; value++) {
+            assertEquals(value, LatencyHistogram.index(value));
+            assertEquals(value, LatencyHistogram.highestValue(LatencyHistogram.index(value)));
+        }
+    }
+
+    @Test
+    public void bucketsCoverTheirValuesWithinPrecision() {
+        long previousIndex = -1;
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 / 2 + 1) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(index >= previousIndex, "index decreased at " + value);
+            long highest = LatencyHistogram.highestValue(index);
+            assertTrue(highest >= value, "bucket for " + value + " ends at " + highest);
+            assertTrue(highest - value <= value / LatencyHistogram.SUB_BUCKETS, "bucket for " + value + " ends at " + highest);
+            previousIndex = index;
+        }
+    }
+
+    @Test
+    public void bucketBoundaries() {
+        // 32 is the first value whose low bit is discarded, so it shares a bucket with 33.
+        assertEquals(LatencyHistogram.index(32), LatencyHistogram.index(33));
+        assertNotEquals(LatencyHistogram.index(33), LatencyHistogram.index(34));
+        assertEquals(33, LatencyHistogram.highestValue(LatencyHistogram.index(32)));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(LatencyHistogram.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMean(), 0.001);
+        assertEquals(500, histogram.getValueAtPercentile(50), 500.0 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(990, histogram.getValueAtPercentile(99), 990.0 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+        assertEquals(1000, histogram.getMax(), 1000.0 / LatencyHistogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void extremes() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
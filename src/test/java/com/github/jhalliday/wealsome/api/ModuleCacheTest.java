@@ -0,0 +1,108 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class ModuleCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void keyIsStable() {
+        String key = ModuleCache.key("config", wasm("binary"));
+        assertEquals(key, ModuleCache.key("config", wasm("binary")));
+        assertTrue(key.matches("[0-9a-f]{64}"), key);
+    }
+
+    @Test
+    public void keyDependsOnConfigAndBinary() {
+        String key = ModuleCache.key("config", wasm("binary"));
+        assertNotEquals(key, ModuleCache.key("config2", wasm("binary")));
+        assertNotEquals(key, ModuleCache.key("config", wasm("binary2")));
+        // the separator stops the boundary between the two from being ambiguous.
+        assertNotEquals(ModuleCache.key("ab", wasm("c")), ModuleCache.key("a", wasm("bc")));
+    }
+
+    @Test
+    public void keyHashesFromPosition() {
+        ByteBuffer buffer = wasm("xxbinary").position(2);
+        assertEquals(ModuleCache.key("config", wasm("binary")), ModuleCache.key("config", buffer));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        Path oldest = artifact("a", 100, 1);
+        Path older = artifact("b", 100, 2);
+        Path newest = artifact("c", 100, 3);
+
+        new ModuleCache(directory, 250).evict(newest);
+
+        assertFalse(Files.exists(oldest));
+        assertTrue(Files.exists(older));
+        assertTrue(Files.exists(newest));
+    }
+
+    @Test
+    public void evictionSparesTheKeptEntry() throws Exception {
+        Path oldest = artifact("a", 100, 1);
+        Path older = artifact("b", 100, 2);
+        Path newest = artifact("c", 100, 3);
+
+        new ModuleCache(directory, 150).evict(oldest);
+
+        assertTrue(Files.exists(oldest));
+        assertFalse(Files.exists(older));
+        assertFalse(Files.exists(newest));
+    }
+
+    @Test
+    public void evictionIgnoresOtherFiles() throws Exception {
+        Path entry = artifact("a", 100, 2);
+        Path aot = directory.resolve("module" + AotArtifact.SUFFIX);
+        Files.write(aot, new byte[1000]);
+        Files.setLastModifiedTime(aot, FileTime.fromMillis(1000));
+        Path tmp = directory.resolve("b" + ModuleCache.SUFFIX + "123.tmp");
+        Files.write(tmp, new byte[1000]);
+
+        new ModuleCache(directory, 150).evict(entry);
+
+        assertTrue(Files.exists(entry));
+        assertTrue(Files.exists(aot));
+        assertTrue(Files.exists(tmp));
+    }
+
+    private Path artifact(String name, int size, long seconds) throws Exception {
+        Path path = directory.resolve(name + ModuleCache.SUFFIX);
+        Files.write(path, new byte[size]);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(seconds * 1000));
+        return path;
+    }
+
+    private static ByteBuffer wasm(String content) {
+        return ByteBuffer.wrap(content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
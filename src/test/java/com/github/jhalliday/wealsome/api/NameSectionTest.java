@@ -0,0 +1,143 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class NameSectionTest {
+
+    private static final byte[] HEADER = {0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00};
+
+    @Test
+    public void readsFunctionNames() {
+        byte[] wasm = concat(HEADER,
+                // a type section, to be skipped: one type, [] -> []
+                section(1, bytes(0x01, 0x60, 0x00, 0x00)),
+                section(0, name("name"),
+                        // the module name subsection, to be skipped
+                        section(0, name("mod")),
+                        section(1, u32(2), u32(0), name("add"), u32(1), name("sub"))));
+
+        assertEquals(Map.of(0, "add", 1, "sub"), NameSection.functionNames(wasm));
+    }
+
+    @Test
+    public void readsMultiByteLeb128() {
+        // 300 and 70000 need two and three bytes respectively, and the section is over 127 bytes long.
+        String longName = "f".repeat(200);
+        byte[] wasm = concat(HEADER,
+                section(0, name("name"),
+                        section(1, u32(2), u32(300), name(longName), u32(70000), name("g"))));
+
+        assertArrayEquals(bytes(0xac, 0x02), u32(300));
+        assertEquals(Map.of(300, longName, 70000, "g"), NameSection.functionNames(wasm));
+    }
+
+    @Test
+    public void ignoresOtherCustomSections() {
+        byte[] wasm = concat(HEADER,
+                section(0, name("producers"), u32(1), u32(5)),
+                section(0, name("name"), section(1, u32(1), u32(3), name("only"))));
+
+        assertEquals(Map.of(3, "only"), NameSection.functionNames(wasm));
+    }
+
+    @Test
+    public void withoutNames() {
+        assertTrue(NameSection.functionNames(HEADER).isEmpty());
+        assertTrue(NameSection.functionNames(concat(HEADER, section(1, bytes(0x01, 0x60, 0x00, 0x00)))).isEmpty());
+    }
+
+    @Test
+    public void malformedInputYieldsWhatWasRead() {
+        byte[] wasm = concat(HEADER,
+                section(0, name("name"), section(1, u32(2), u32(0), name("add"), u32(1), name("sub"))));
+
+        // cut off part way through the second name.
+        assertEquals(Map.of(0, "add"), NameSection.functionNames(Arrays.copyOf(wasm, wasm.length - 2)));
+        // an unterminated LEB128.
+        assertTrue(NameSection.functionNames(concat(HEADER, bytes(0x00, 0xff, 0xff, 0xff, 0xff, 0xff, 0x01))).isEmpty());
+        // not wasm at all.
+        assertTrue(NameSection.functionNames("not wasm".getBytes(StandardCharsets.US_ASCII)).isEmpty());
+    }
+
+    @Test
+    public void bufferPositionIsUnchanged() {
+        byte[] wasm = concat(bytes(0x11, 0x22), HEADER, section(0, name("name"), section(1, u32(1), u32(0), name("f"))));
+        ByteBuffer buffer = ByteBuffer.wrap(wasm).position(2);
+
+        assertEquals(Map.of(0, "f"), NameSection.functionNames(buffer));
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void readsFile() throws Exception {
+        byte[] wasm = concat(HEADER, section(0, name("name"), section(1, u32(1), u32(7), name("seven"))));
+        Path path = Files.createTempFile("names", ".wasm");
+        try {
+            Files.write(path, wasm);
+            assertEquals(Map.of(7, "seven"), NameSection.functionNames(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static byte[] section(int id, byte[]... contents) {
+        byte[] content = concat(contents);
+        return concat(bytes(id), u32(content.length), content);
+    }
+
+    private static byte[] name(String name) {
+        byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+        return concat(u32(utf8.length), utf8);
+    }
+
+    private static byte[] u32(int value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        do {
+            int b = value & 0x7f;
+            value >>>= 7;
+            out.write(value == 0 ? b : b | 0x80);
+        } while (value != 0);
+        return out.toByteArray();
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
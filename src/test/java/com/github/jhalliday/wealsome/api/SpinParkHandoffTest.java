@@ -0,0 +1,144 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class SpinParkHandoffTest {
+
+    @Test
+    public void inOrder() throws Exception {
+        SpinParkHandoff<String> handoff = new SpinParkHandoff<>(SpinParkHandoff.DEFAULT_SPINS);
+        assertNull(handoff.poll());
+        handoff.put("a");
+        handoff.put("b");
+        handoff.put("c");
+        assertEquals("a", handoff.take());
+        assertEquals("b", handoff.poll());
+        assertEquals("c", handoff.take());
+        assertNull(handoff.poll());
+    }
+
+    @Test
+    public void parkedTakerIsWoken() throws Exception {
+        SpinParkHandoff<String> handoff = new SpinParkHandoff<>(1);
+        CompletableFuture<String> taken = new CompletableFuture<>();
+        Thread taker = new Thread(() -> {
+            try {
+                taken.complete(handoff.take());
+            } catch (InterruptedException e) {
+                taken.completeExceptionally(e);
+            }
+        });
+        taker.start();
+        awaitParked(taker);
+
+        handoff.put("item");
+        assertEquals("item", taken.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void parkedTakerIsInterruptible() throws Exception {
+        SpinParkHandoff<String> handoff = new SpinParkHandoff<>(1);
+        CompletableFuture<String> taken = new CompletableFuture<>();
+        Thread taker = new Thread(() -> {
+            try {
+                taken.complete(handoff.take());
+            } catch (InterruptedException e) {
+                taken.completeExceptionally(e);
+            }
+        });
+        taker.start();
+        awaitParked(taker);
+
+        taker.interrupt();
+        taker.join(TimeUnit.SECONDS.toMillis(10));
+        assertTrue(taken.isCompletedExceptionally());
+        // the interrupted taker must not be left registered, to swallow the unpark for the next one.
+        handoff.put("item");
+        assertEquals("item", handoff.take());
+    }
+
+    @Test
+    public void nothingLostUnderContention() throws Exception {
+        // few spins, so that the takers park and are unparked often.
+        SpinParkHandoff<Long> handoff = new SpinParkHandoff<>(16);
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 20_000;
+        long stop = -1;
+
+        AtomicLong sum = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                try {
+                    long item;
+                    while ((item = handoff.take()) != stop) {
+                        sum.addAndGet(item);
+                        count.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        List<Thread> producerThreads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            producerThreads.add(new Thread(() -> {
+                for (long i = 1; i <= perProducer; i++) {
+                    handoff.put(i);
+                    if (i % 1000 == 0) {
+                        // let the consumers run dry now and then.
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        producerThreads.forEach(Thread::start);
+        for (Thread thread : producerThreads) {
+            thread.join();
+        }
+        for (int c = 0; c < consumers; c++) {
+            handoff.put(stop);
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(thread.isAlive(), "a consumer missed its wakeup");
+        }
+
+        assertEquals((long) producers * perProducer, count.get());
+        assertEquals((long) producers * perProducer * (perProducer + 1) / 2, sum.get());
+    }
+
+    private static void awaitParked(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, thread.getState());
+    }
+}
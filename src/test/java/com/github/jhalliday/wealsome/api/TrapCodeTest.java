@@ -0,0 +1,46 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class TrapCodeTest {
+
+    @Test
+    public void mapsWasmtimeTrapCodes() {
+        // the values of wasmtime_trap_code_enum in wasmtime/trap.h
+        assertEquals(TrapCode.STACK_OVERFLOW, TrapCode.fromCNum(0));
+        assertEquals(TrapCode.MEMORY_OUT_OF_BOUNDS, TrapCode.fromCNum(1));
+        assertEquals(TrapCode.HEAP_MISALIGNED, TrapCode.fromCNum(2));
+        assertEquals(TrapCode.TABLE_OUT_OF_BOUNDS, TrapCode.fromCNum(3));
+        assertEquals(TrapCode.INDIRECT_CALL_TO_NULL, TrapCode.fromCNum(4));
+        assertEquals(TrapCode.BAD_SIGNATURE, TrapCode.fromCNum(5));
+        assertEquals(TrapCode.INTEGER_OVERFLOW, TrapCode.fromCNum(6));
+        assertEquals(TrapCode.INTEGER_DIVISION_BY_ZERO, TrapCode.fromCNum(7));
+        assertEquals(TrapCode.BAD_CONVERSION_TO_INTEGER, TrapCode.fromCNum(8));
+        assertEquals(TrapCode.UNREACHABLE_CODE_REACHED, TrapCode.fromCNum(9));
+        assertEquals(TrapCode.INTERRUPT, TrapCode.fromCNum(10));
+    }
+
+    @Test
+    public void unknownCodes() {
+        assertNull(TrapCode.fromCNum(-1));
+        assertNull(TrapCode.fromCNum(11));
+        assertNull(TrapCode.fromCNum(Integer.MAX_VALUE));
+    }
+}
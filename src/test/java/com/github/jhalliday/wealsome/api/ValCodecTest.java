@@ -0,0 +1,91 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import com.github.jhalliday.wealsome.generated.wasm_val_t;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class ValCodecTest {
+
+    @Test
+    public void roundTrips() {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            MemorySegment vals = MemorySegment.allocateNative(wasm_val_t.sizeof() * 6, resourceScope);
+            ValCodec.I32.write(vals, 0, -7);
+            ValCodec.I64.write(vals, 1, Long.MIN_VALUE);
+            ValCodec.F32.write(vals, 2, 1.5f);
+            ValCodec.F64.write(vals, 3, Math.PI);
+            ValCodec.ANYREF.write(vals, 4, 0x1234L);
+            ValCodec.FUNCREF.write(vals, 5, null);
+
+            assertEquals(-7, ValCodec.I32.read(vals, 0));
+            assertEquals(Long.MIN_VALUE, ValCodec.I64.read(vals, 1));
+            assertEquals(1.5f, ValCodec.F32.read(vals, 2));
+            assertEquals(Math.PI, ValCodec.F64.read(vals, 3));
+            assertEquals(0x1234L, ValCodec.ANYREF.read(vals, 4));
+            assertEquals(0L, ValCodec.FUNCREF.read(vals, 5));
+        }
+    }
+
+    @Test
+    public void writesTheKind() {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            MemorySegment vals = MemorySegment.allocateNative(wasm_val_t.sizeof() * ValCodec.values().length, resourceScope);
+            for (ValCodec valCodec : ValCodec.values()) {
+                valCodec.write(vals, valCodec.ordinal(), 1);
+            }
+            for (ValCodec valCodec : ValCodec.values()) {
+                assertEquals(valCodec, ValCodec.forKind(vals, valCodec.ordinal()));
+            }
+        }
+    }
+
+    @Test
+    public void convertsToTheCodecType() {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            MemorySegment vals = MemorySegment.allocateNative(wasm_val_t.sizeof() * 2, resourceScope);
+            ValCodec.I32.write(vals, 0, 3.9d);
+            ValCodec.F64.write(vals, 1, 2);
+
+            assertEquals(3, ValCodec.I32.read(vals, 0));
+            assertEquals(2.0d, ValCodec.F64.read(vals, 1));
+        }
+    }
+
+    @Test
+    public void rejectsUnknownKinds() {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            MemorySegment vals = MemorySegment.allocateNative(wasm_val_t.sizeof(), resourceScope);
+            vals.fill((byte) 0x7f);
+            assertThrows(IllegalArgumentException.class, () -> ValCodec.forKind(vals, 0));
+        }
+    }
+
+    @Test
+    public void codecsForTypes() {
+        for (ValType valType : ValType.values()) {
+            assertEquals(valType, ValCodec.of(valType).valType);
+        }
+        assertArrayEquals(new ValCodec[]{ValCodec.I64, ValCodec.F32},
+                ValCodec.of(List.of(ValType.I64, ValType.F32)));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.ResourceScope;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class ValMarshallerTest {
+
+    private final ValMarshaller valMarshaller = ValMarshaller.of(ValType.I32, ValType.I64, ValType.F32, ValType.F64);
+
+    @Test
+    public void newVecIsZeroedAndTyped() {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ValVec valVec = valMarshaller.newValVec(resourceScope);
+            assertEquals(4, valVec.size());
+            assertArrayEquals(new Number[]{0, 0L, 0f, 0d}, valMarshaller.read(valVec));
+            for (int i = 0; i < 4; i++) {
+                assertEquals(valMarshaller.getValTypes().get(i), valVec.read(i).valType);
+            }
+        }
+    }
+
+    @Test
+    public void fullWidthRoundTrip() {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ValVec valVec = valMarshaller.newValVec(resourceScope);
+            valMarshaller.write(valVec, Integer.MIN_VALUE, Long.MAX_VALUE, Float.MIN_VALUE, -Double.MAX_VALUE);
+            assertArrayEquals(new Number[]{Integer.MIN_VALUE, Long.MAX_VALUE, Float.MIN_VALUE, -Double.MAX_VALUE},
+                    valMarshaller.read(valVec));
+
+            Number[] values = new Number[4];
+            valMarshaller.read(valVec, values);
+            assertEquals(Long.MAX_VALUE, values[1]);
+        }
+    }
+
+    @Test
+    public void convertsToThePositionType() {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ValVec valVec = valMarshaller.newValVec(resourceScope);
+            valMarshaller.write(valVec, 7L, 7, 7, 7);
+            assertArrayEquals(new Number[]{7, 7L, 7f, 7d}, valMarshaller.read(valVec));
+        }
+    }
+
+    @Test
+    public void rejectsTheWrongNumberOfValues() {
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope()) {
+            ValVec valVec = valMarshaller.newValVec(resourceScope);
+            assertThrows(IllegalArgumentException.class, () -> valMarshaller.write(valVec, 1, 2L, 3f));
+        }
+    }
+
+    @Test
+    public void inArena() {
+        try (CallArena callArena = CallArena.acquire()) {
+            ValVec valVec = valMarshaller.newValVec(callArena);
+            valMarshaller.write(valVec, 1, 2L, 3f, 4d);
+            assertArrayEquals(new Number[]{1, 2L, 3f, 4d}, valMarshaller.read(valVec));
+        }
+    }
+
+    @Test
+    public void signature() {
+        assertEquals(List.of(ValType.I64), ValMarshaller.of(List.of(ValType.I64)).getValTypes());
+        assertTrue(ValMarshaller.of().newValVec(ResourceScope.globalScope()).size() == 0);
+    }
+}
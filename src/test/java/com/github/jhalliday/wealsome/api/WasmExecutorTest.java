@@ -0,0 +1,104 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Needs the wasm native library.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class WasmExecutorTest {
+
+    /*
+     * (module
+     *   (func (export "spin") (param i32) (result i32)
+     *     (block (loop
+     *       (br_if 1 (i32.eqz (local.get 0)))
+     *       (local.set 0 (i32.sub (local.get 0) (i32.const 1)))
+     *       (br 0)))
+     *     (local.get 0)))
+     */
+    private static final byte[] WASM = {
+            0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00,
+            0x01, 0x06, 0x01, 0x60, 0x01, 0x7f, 0x01, 0x7f,
+            0x03, 0x02, 0x01, 0x00,
+            0x07, 0x08, 0x01, 0x04, 0x73, 0x70, 0x69, 0x6e, 0x00, 0x00,
+            0x0a, 0x1a, 0x01, 0x18, 0x00, 0x02, 0x40, 0x03, 0x40, 0x20, 0x00, 0x45, 0x0d, 0x01,
+            0x20, 0x00, 0x41, 0x01, 0x6b, 0x21, 0x00, 0x0c, 0x00, 0x0b, 0x0b, 0x20, 0x00, 0x0b
+    };
+
+    // long enough to outlast the deadline by far, short enough to finish during the test.
+    private static final int LONG_SPIN = Integer.MAX_VALUE;
+
+    @BeforeAll
+    public static void loadLibrary() {
+        System.loadLibrary("wasmtime");
+    }
+
+    @Test
+    public void calls() {
+        try (Engine engine = new Engine();
+             WasmExecutor executor = new WasmExecutor(engine, WASM, 2)) {
+            assertEquals(2, executor.getWorkerCount());
+            assertArrayEquals(new Number[]{0}, executor.call("spin", 10));
+            assertThrows(IllegalArgumentException.class, () -> executor.submit("missing"));
+        }
+    }
+
+    @Test
+    public void runawayCallDoesNotTakeCapacity() throws Exception {
+        try (Engine engine = new Engine()) {
+            try (WasmExecutor executor = new WasmExecutor(engine, WASM, 1)) {
+                CompletableFuture<Number[]> runaway = executor.submit("spin", Duration.ofMillis(50), LONG_SPIN);
+                ExecutionException executionException = assertThrows(ExecutionException.class, runaway::get);
+                assertTrue(((TrapException) executionException.getCause()).isTimeout());
+                assertEquals(1, executor.getStuckWorkerCount());
+                assertEquals(1, executor.getWorkerCount());
+
+                // served by the replacement, while the retired worker is still spinning.
+                assertArrayEquals(new Number[]{0}, executor.submit("spin", 1).get(10, TimeUnit.SECONDS));
+                assertEquals(1, executor.getStuckWorkerCount());
+
+                // the retired worker stops once the guest returns.
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+                while (executor.getStuckWorkerCount() != 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(50);
+                }
+                assertEquals(0, executor.getStuckWorkerCount());
+                assertEquals(1, executor.getWorkerCount());
+            }
+        }
+    }
+
+    @Test
+    public void callsWithinTheirDeadlineKeepTheirWorker() {
+        try (Engine engine = new Engine();
+             WasmExecutor executor = new WasmExecutor(engine, WASM, 1)) {
+            for (int i = 0; i < 100; i++) {
+                assertArrayEquals(new Number[]{0}, executor.submit("spin", Duration.ofSeconds(10), 100).join());
+            }
+            assertEquals(0, executor.getStuckWorkerCount());
+            assertEquals(1, executor.getWorkerCount());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jhalliday.wealsome.api;
+
+import jdk.incubator.foreign.ResourceScope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs with metrics on, see the surefire configuration in the pom, so the instrumented call path is the one tested.
+ * Needs the wasm native library.
+ *
+ * @author Jonathan Halliday (jonathan.halliday@redhat.com)
+ */
+public class WasmFuncTest {
+
+    /*
+     * (module
+     *   (func (export "div") (param i32 i32) (result i32) local.get 0 local.get 1 i32.div_s))
+     */
+    private static final byte[] WASM = {
+            0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00,
+            0x01, 0x07, 0x01, 0x60, 0x02, 0x7f, 0x7f, 0x01, 0x7f,
+            0x03, 0x02, 0x01, 0x00,
+            0x07, 0x07, 0x01, 0x03, 0x64, 0x69, 0x76, 0x00, 0x00,
+            0x0a, 0x09, 0x01, 0x07, 0x00, 0x20, 0x00, 0x20, 0x01, 0x6d, 0x0b
+    };
+
+    private static class RecordingSink implements MetricsSink {
+        final List<String> calls = new ArrayList<>();
+        int trapped;
+
+        @Override
+        public synchronized void call(String exportName, long nanos, boolean trapped) {
+            calls.add(exportName);
+            if (trapped) {
+                this.trapped++;
+            }
+        }
+    }
+
+    private final RecordingSink sink = new RecordingSink();
+
+    @BeforeAll
+    public static void loadLibrary() {
+        System.loadLibrary("wasmtime");
+        assertTrue(WasmMetrics.ENABLED, "needs -Dwealsome.metrics=true");
+    }
+
+    @AfterEach
+    public void restoreSink() {
+        WasmMetrics.setSink(new HistogramMetricsSink());
+    }
+
+    @Test
+    public void typedInvokerIsRecorded() {
+        WasmMetrics.setSink(sink);
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope();
+             Engine engine = new Engine();
+             Store store = engine.newStore();
+             Module module = compile(resourceScope, store);
+             ExternVec imports = new ExternVec(resourceScope);
+             Instance instance = new Instance(store, module, imports)) {
+            IntBinaryOperator div = instance.func("div").asIntBinaryOperator();
+
+            assertEquals(3, div.applyAsInt(7, 2));
+            assertThrows(TrapException.class, () -> div.applyAsInt(1, 0));
+            assertEquals(-1, instance.func("div").asIntBinaryOperator(-1).applyAsInt(1, 0));
+        }
+        assertEquals(List.of("div", "div", "div"), sink.calls);
+        assertEquals(2, sink.trapped);
+    }
+
+    @Test
+    public void batchIsRecorded() {
+        WasmMetrics.setSink(sink);
+        try (ResourceScope resourceScope = ResourceScope.newConfinedScope();
+             Engine engine = new Engine();
+             Store store = engine.newStore();
+             Module module = compile(resourceScope, store);
+             ExternVec imports = new ExternVec(resourceScope);
+             Instance instance = new Instance(store, module, imports)) {
+            int[] out = new int[3];
+            BatchResult batchResult = instance.func("div").applyBatch(new int[]{6, 9, 8}, new int[]{3, 0, 2}, out);
+
+            assertEquals(2, out[0]);
+            assertEquals(4, out[2]);
+            assertArrayEquals(new int[]{1}, batchResult.getTrapPositions());
+        }
+        assertEquals(List.of("div", "div", "div"), sink.calls);
+        assertEquals(1, sink.trapped);
+    }
+
+    private static Module compile(ResourceScope resourceScope, Store store) {
+        try (ByteVec binary = new ByteVec(resourceScope, WASM)) {
+            return new Module(store, binary);
+        }
+    }
+}